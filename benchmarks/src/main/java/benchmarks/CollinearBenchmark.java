@@ -0,0 +1,107 @@
+/******************************************************************************
+ *  Compilation:  mvn -f benchmarks/pom.xml package
+ *  Execution:    java -jar benchmarks/target/benchmarks.jar CollinearBenchmark
+ *                    [-p input=input8.txt,grid6x6.txt] [-rf json -rff results.json]
+ *  Dependencies: Point.java PointSet.java LineSegment.java
+ *                FastCollinearPoints.java BruteCollinearPoints.java
+ *                HashCollinearPoints.java Slopes.java In.java JMH
+ *
+ *  Benchmarks FastCollinearPoints, from a Point[] and from a PointSet,
+ *  on one thread and on all cores, and HashCollinearPoints against
+ *  BruteCollinearPoints on the inputs of collinear-testing.zip, which
+ *  the build packs into the jar. BruteCollinearPoints is O(n^4) and
+ *  only runs on the inputs of at most 400 points.
+ *
+ ******************************************************************************/
+
+package benchmarks;
+
+import edu.princeton.cs.algs4.In;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CollinearBenchmark {
+
+    /**
+     * The points of one input file, as a PointSet and as a Point[].
+     */
+    public abstract static class Input {
+        PointSet set;
+        Point[] points;
+        int cores;
+
+        abstract String input();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            set = PointSet.read(new In(CollinearBenchmark.class.getResource("/collinear/" + input())));
+            points = set.toPoints();
+            cores = Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class AnyInput extends Input {
+        @Param({ "input8.txt", "input40.txt", "input400.txt", "input1000.txt",
+                 "input10000.txt", "grid6x6.txt", "horizontal100.txt",
+                 "vertical100.txt", "random91.txt" })
+        public String input;
+
+        String input() {
+            return input;
+        }
+    }
+
+    // inputs small enough for BruteCollinearPoints
+    @State(Scope.Benchmark)
+    public static class SmallInput extends Input {
+        @Param({ "input8.txt", "input40.txt", "input400.txt", "grid6x6.txt",
+                 "horizontal100.txt", "vertical100.txt", "random91.txt" })
+        public String input;
+
+        String input() {
+            return input;
+        }
+    }
+
+    @Benchmark
+    public LineSegment[] fast(AnyInput in) {
+        return new FastCollinearPoints(in.points).segments();
+    }
+
+    @Benchmark
+    public LineSegment[] fastPointSet(AnyInput in) {
+        return new FastCollinearPoints(in.set).segments();
+    }
+
+    @Benchmark
+    public LineSegment[] fastParallel(AnyInput in) {
+        return new FastCollinearPoints(in.set, in.cores).segments();
+    }
+
+    @Benchmark
+    public LineSegment[] hash(AnyInput in) {
+        return new HashCollinearPoints(in.points).segments();
+    }
+
+    @Benchmark
+    public LineSegment[] brute(SmallInput in) {
+        return new BruteCollinearPoints(in.points).segments();
+    }
+}
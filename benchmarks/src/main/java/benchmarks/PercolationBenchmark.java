@@ -0,0 +1,161 @@
+/******************************************************************************
+ *  Compilation:  mvn -f benchmarks/pom.xml package
+ *  Execution:    java -jar benchmarks/target/benchmarks.jar PercolationBenchmark
+ *                    [-p n=64,256,1024] [-rf json -rff results.json]
+ *  Dependencies: Percolation.java PercolationStats.java JMH
+ *
+ *  Benchmarks Percolation.open(), isFull(), percolates() and snapshot()
+ *  for each grid size n, and PercolationStats sequentially and on all
+ *  cores, with both ways of sampling sites.
+ *
+ ******************************************************************************/
+
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PercolationBenchmark {
+
+    /**
+     * A n-by-n grid: its sites in a random order, and a system with
+     * the first 60% of them open.
+     */
+    @State(Scope.Benchmark)
+    public static class Grid {
+        @Param({ "64", "256", "1024" })
+        public int n;
+
+        int[] rows, cols;
+        Percolation perc;
+        byte[] states;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int sites = n * n;
+            int[] order = new int[sites];
+            for (int i = 0; i < sites; i++) order[i] = i;
+            SplittableRandom random = new SplittableRandom(42);
+            for (int i = sites - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+            rows = new int[sites];
+            cols = new int[sites];
+            for (int i = 0; i < sites; i++) {
+                rows[i] = order[i] / n + 1;
+                cols[i] = order[i] % n + 1;
+            }
+
+            perc = new Percolation(n);
+            for (int i = 0; i < sites * 6 / 10; i++) perc.open(rows[i], cols[i]);
+            states = new byte[sites];
+        }
+    }
+
+    /**
+     * Opens every site of a new grid.
+     */
+    @Benchmark
+    public Percolation open(Grid grid) {
+        Percolation perc = new Percolation(grid.n);
+        for (int i = 0; i < grid.rows.length; i++) perc.open(grid.rows[i], grid.cols[i]);
+        return perc;
+    }
+
+    /**
+     * Opens sites of a new grid until it percolates, asking
+     * percolates() after every site, as PercolationStats does.
+     */
+    @Benchmark
+    public int openUntilPercolates(Grid grid) {
+        Percolation perc = new Percolation(grid.n);
+        int i = 0;
+        while (!perc.percolates()) {
+            perc.open(grid.rows[i], grid.cols[i]);
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Asks isFull() of every site of the 60% open grid.
+     */
+    @Benchmark
+    public void isFull(Grid grid, Blackhole bh) {
+        Percolation perc = grid.perc;
+        for (int row = 1; row <= grid.n; row++) {
+            for (int col = 1; col <= grid.n; col++) bh.consume(perc.isFull(row, col));
+        }
+    }
+
+    /**
+     * One percolates() call. JMH reads the grid from the state on
+     * every call and consumes the answer, so the call is not hoisted.
+     */
+    @Benchmark
+    public boolean percolates(Grid grid) {
+        return grid.perc.percolates();
+    }
+
+    /**
+     * The states of all sites of the 60% open grid.
+     */
+    @Benchmark
+    public byte[] snapshot(Grid grid) {
+        return grid.perc.snapshot(grid.states);
+    }
+
+    /**
+     * The parameters of a PercolationStats run; threads 0 stands for
+     * all cores.
+     */
+    @State(Scope.Benchmark)
+    public static class Stats {
+        @Param({ "64", "256" })
+        public int n;
+
+        @Param({ "20" })
+        public int trials;
+
+        @Param({ "1", "0" })
+        public int threads;
+
+        @Param({ "REJECTION", "PERMUTATION" })
+        public PercolationStats.Sampling sampling;
+
+        int workers;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            workers = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double stats(Stats stats) {
+        return new PercolationStats(stats.n, stats.trials, 7, stats.workers,
+                                    stats.sampling).mean();
+    }
+}
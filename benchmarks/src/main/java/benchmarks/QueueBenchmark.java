@@ -0,0 +1,406 @@
+/******************************************************************************
+ *  Compilation:  mvn -f benchmarks/pom.xml package
+ *  Execution:    java -jar benchmarks/target/benchmarks.jar QueueBenchmark
+ *                    [-p size=1000000] [-p threads=1,2,4,8]
+ *                    [-rf json -rff results.json]
+ *  Dependencies: Deque.java ResizingArrayDeque.java IntDeque.java
+ *                BoundedBlockingDeque.java RandomizedQueue.java
+ *                ConcurrentRandomizedQueue.java WeightedRandomizedQueue.java
+ *                RandomSource.java JMH
+ *
+ *  Benchmarks adding, removing and iterating size items at both ends
+ *  of Deque, ResizingArrayDeque and IntDeque, and enqueue, dequeue,
+ *  sample, bulk sampling and iteration of RandomizedQueue, and weighted
+ *  enqueue and dequeue of WeightedRandomizedQueue.
+ *  Also hands size items from producers threads to consumers threads
+ *  through BoundedBlockingDeque and through
+ *  java.util.concurrent.LinkedBlockingDeque of the same capacity.
+ *  Finally, each of threads threads enqueues and dequeues its share of
+ *  size items on one ConcurrentRandomizedQueue, and on one RandomizedQueue
+ *  behind a lock; with linear scaling the time falls in proportion to
+ *  the number of threads.
+ *
+ ******************************************************************************/
+
+package benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QueueBenchmark {
+    // capacity of the blocking deques in the handoff benchmarks
+    private static final int HANDOFF_CAPACITY = 1024;
+    // items per call in the bulk sampling benchmarks
+    private static final int BATCH = 64;
+
+    /**
+     * size boxed items, the same for every call so boxing is not
+     * measured, and full queues to sample and iterate.
+     */
+    @State(Scope.Benchmark)
+    public static class Items {
+        @Param({ "1000000" })
+        public int size;
+
+        Integer[] items;
+        Deque<Integer> deque;
+        ResizingArrayDeque<Integer> arrayDeque;
+        IntDeque intDeque;
+        RandomizedQueue<Integer> queue;
+        Integer[] batch;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            items = new Integer[size];
+            for (int i = 0; i < size; i++) items[i] = i;
+            deque = new Deque<Integer>();
+            arrayDeque = new ResizingArrayDeque<Integer>();
+            intDeque = new IntDeque();
+            queue = new RandomizedQueue<Integer>(RandomSource.splittable(42));
+            for (int i = 0; i < size; i++) {
+                deque.addLast(items[i]);
+                arrayDeque.addLast(items[i]);
+                intDeque.addLast(i);
+                queue.enqueue(items[i]);
+            }
+            batch = new Integer[BATCH];
+        }
+    }
+
+   /***************************************************************************
+    *  Deques
+    ***************************************************************************/
+
+    @Benchmark
+    public void dequeAddLastRemoveFirst(Items s, Blackhole bh) {
+        Deque<Integer> deque = new Deque<Integer>();
+        for (int i = 0; i < s.size; i++) deque.addLast(s.items[i]);
+        for (int i = 0; i < s.size; i++) bh.consume(deque.removeFirst());
+    }
+
+    @Benchmark
+    public void dequeAddFirstRemoveLast(Items s, Blackhole bh) {
+        Deque<Integer> deque = new Deque<Integer>();
+        for (int i = 0; i < s.size; i++) deque.addFirst(s.items[i]);
+        for (int i = 0; i < s.size; i++) bh.consume(deque.removeLast());
+    }
+
+    @Benchmark
+    public void dequeIterate(Items s, Blackhole bh) {
+        for (Integer x : s.deque) bh.consume(x);
+    }
+
+    @Benchmark
+    public void resizingArrayDequeAddLastRemoveFirst(Items s, Blackhole bh) {
+        ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<Integer>();
+        for (int i = 0; i < s.size; i++) deque.addLast(s.items[i]);
+        for (int i = 0; i < s.size; i++) bh.consume(deque.removeFirst());
+    }
+
+    @Benchmark
+    public void resizingArrayDequeAddFirstRemoveLast(Items s, Blackhole bh) {
+        ResizingArrayDeque<Integer> deque = new ResizingArrayDeque<Integer>();
+        for (int i = 0; i < s.size; i++) deque.addFirst(s.items[i]);
+        for (int i = 0; i < s.size; i++) bh.consume(deque.removeLast());
+    }
+
+    @Benchmark
+    public void resizingArrayDequeIterate(Items s, Blackhole bh) {
+        for (Integer x : s.arrayDeque) bh.consume(x);
+    }
+
+    @Benchmark
+    public void intDequeAddLastRemoveFirst(Items s, Blackhole bh) {
+        IntDeque deque = new IntDeque();
+        for (int i = 0; i < s.size; i++) deque.addLast(i);
+        for (int i = 0; i < s.size; i++) bh.consume(deque.removeFirst());
+    }
+
+    @Benchmark
+    public void intDequeForEach(Items s, final Blackhole bh) {
+        s.intDeque.forEach(new IntConsumer() {
+            public void accept(int value) {
+                bh.consume(value);
+            }
+        });
+    }
+
+   /***************************************************************************
+    *  Randomized queues
+    ***************************************************************************/
+
+    @Benchmark
+    public void randomizedQueueEnqueueDequeue(Items s, Blackhole bh) {
+        RandomizedQueue<Integer> queue = new RandomizedQueue<Integer>(RandomSource.splittable(7));
+        for (int i = 0; i < s.size; i++) queue.enqueue(s.items[i]);
+        for (int i = 0; i < s.size; i++) bh.consume(queue.dequeue());
+    }
+
+    @Benchmark
+    public void randomizedQueueSample(Items s, Blackhole bh) {
+        for (int i = 0; i < s.size; i++) bh.consume(s.queue.sample());
+    }
+
+    /**
+     * size / BATCH mini-batches of BATCH items, with replacement.
+     */
+    @Benchmark
+    public void randomizedQueueSampleBatch(Items s, Blackhole bh) {
+        for (int b = 0; b < Math.max(1, s.size / BATCH); b++) {
+            s.queue.sample(BATCH, s.batch);
+            bh.consume(s.batch);
+        }
+    }
+
+    /**
+     * size / BATCH mini-batches of BATCH distinct items.
+     */
+    @Benchmark
+    public void randomizedQueueSampleDistinct(Items s, Blackhole bh) {
+        int k = Math.min(BATCH, s.size);
+        for (int b = 0; b < Math.max(1, s.size / BATCH); b++) {
+            s.queue.sampleDistinct(k, s.batch);
+            bh.consume(s.batch);
+        }
+    }
+
+    @Benchmark
+    public void randomizedQueueIterate(Items s, Blackhole bh) {
+        for (Integer x : s.queue) bh.consume(x);
+    }
+
+    @Benchmark
+    public void weightedRandomizedQueueEnqueueDequeue(Items s, Blackhole bh) {
+        WeightedRandomizedQueue<Integer> queue =
+            new WeightedRandomizedQueue<Integer>(RandomSource.splittable(s.size));
+        for (int i = 0; i < s.size; i++) queue.enqueue(s.items[i], 1 + (i & 15));
+        for (int i = 0; i < s.size; i++) bh.consume(queue.dequeue());
+    }
+
+   /***************************************************************************
+    *  Handoff between threads
+    ***************************************************************************/
+
+    /**
+     * The blocking operations of a handoff buffer.
+     */
+    private interface Handoff {
+        void put(Integer item) throws InterruptedException;
+        Integer take() throws InterruptedException;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Handoffs {
+        @Param({ "8" })
+        public int producers;
+
+        @Param({ "8" })
+        public int consumers;
+    }
+
+    /**
+     * Hands all items from producers threads to consumers threads
+     * through the buffer, and returns the sum of what was taken.
+     * The sums are kept per thread, as a Blackhole is not shared
+     * between threads.
+     */
+    private static long handoff(final Handoff buffer, final Integer[] items,
+                                final int producers, final int consumers) {
+        final AtomicLong sum = new AtomicLong();
+        Task[] tasks = new Task[producers + consumers];
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            tasks[p] = new Task() {
+                public void run() throws InterruptedException {
+                    for (int i = id; i < items.length; i += producers) buffer.put(items[i]);
+                }
+            };
+        }
+        for (int c = 0; c < consumers; c++) {
+            // every consumer takes an equal share, the first ones one more
+            final int share = items.length / consumers + (c < items.length % consumers ? 1 : 0);
+            tasks[producers + c] = new Task() {
+                public void run() throws InterruptedException {
+                    long local = 0;
+                    for (int i = 0; i < share; i++) local += buffer.take();
+                    sum.addAndGet(local);
+                }
+            };
+        }
+        runAll(tasks);
+        return sum.get();
+    }
+
+    @Benchmark
+    public long boundedBlockingDequeHandoff(Items s, Handoffs h) {
+        final BoundedBlockingDeque<Integer> deque =
+            new BoundedBlockingDeque<Integer>(HANDOFF_CAPACITY);
+        return handoff(new Handoff() {
+            public void put(Integer item) throws InterruptedException {
+                deque.putLast(item);
+            }
+            public Integer take() throws InterruptedException {
+                return deque.takeFirst();
+            }
+        }, s.items, h.producers, h.consumers);
+    }
+
+    @Benchmark
+    public long linkedBlockingDequeHandoff(Items s, Handoffs h) {
+        final LinkedBlockingDeque<Integer> deque =
+            new LinkedBlockingDeque<Integer>(HANDOFF_CAPACITY);
+        return handoff(new Handoff() {
+            public void put(Integer item) throws InterruptedException {
+                deque.putLast(item);
+            }
+            public Integer take() throws InterruptedException {
+                return deque.takeFirst();
+            }
+        }, s.items, h.producers, h.consumers);
+    }
+
+   /***************************************************************************
+    *  Shared randomized queues
+    ***************************************************************************/
+
+    /**
+     * The operations of a randomized queue shared by threads.
+     */
+    private interface SharedQueue {
+        void enqueue(Integer item);
+        Integer dequeue();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Sharing {
+        @Param({ "1", "2", "4", "8" })
+        public int threads;
+    }
+
+    /**
+     * Has threads threads enqueue and then dequeue an equal share of
+     * the items, one pair at a time, and returns the sum dequeued.
+     * Every thread enqueues before it dequeues, so the queue never
+     * runs empty.
+     */
+    private static long mixed(final SharedQueue queue, final Integer[] items, final int threads) {
+        final AtomicLong sum = new AtomicLong();
+        Task[] tasks = new Task[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            tasks[t] = new Task() {
+                public void run() {
+                    long local = 0;
+                    for (int i = id; i < items.length; i += threads) {
+                        queue.enqueue(items[i]);
+                        local += queue.dequeue();
+                    }
+                    sum.addAndGet(local);
+                }
+            };
+        }
+        runAll(tasks);
+        return sum.get();
+    }
+
+    @Benchmark
+    public long concurrentRandomizedQueueMixed(Items s, Sharing sharing) {
+        final ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<Integer>();
+        return mixed(new SharedQueue() {
+            public void enqueue(Integer item) {
+                queue.enqueue(item);
+            }
+            public Integer dequeue() {
+                return queue.dequeue();
+            }
+        }, s.items, sharing.threads);
+    }
+
+    @Benchmark
+    public long lockedRandomizedQueueMixed(Items s, Sharing sharing) {
+        final RandomizedQueue<Integer> queue = new RandomizedQueue<Integer>(RandomSource.splittable(7));
+        return mixed(new SharedQueue() {
+            public synchronized void enqueue(Integer item) {
+                queue.enqueue(item);
+            }
+            public synchronized Integer dequeue() {
+                return queue.dequeue();
+            }
+        }, s.items, sharing.threads);
+    }
+
+    /**
+     * The work of one thread of a benchmark.
+     */
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs each task on a thread of its own and waits for all of them.
+     * The first task to fail interrupts the others, so that none stays
+     * blocked on a buffer the failed one would have filled or drained,
+     * and its exception is rethrown here; JMH then reports the failure
+     * instead of a score. No task starts before every thread is alive,
+     * so the interrupts cannot miss a thread.
+     */
+    private static void runAll(Task[] tasks) {
+        final Thread[] threads = new Thread[tasks.length];
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < tasks.length; i++) {
+            final Task task = tasks[i];
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        task.run();
+                    }
+                    catch (Throwable t) {
+                        if (failure.compareAndSet(null, t)) {
+                            for (Thread thread : threads) {
+                                if (thread != Thread.currentThread()) thread.interrupt();
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        start.countDown();
+        try {
+            for (Thread thread : threads) thread.join();
+        }
+        catch (InterruptedException e) {
+            for (Thread thread : threads) thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the workers", e);
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        if (t != null) throw new IllegalStateException("Worker failed", t);
+    }
+}
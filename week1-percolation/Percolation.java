@@ -1,52 +1,56 @@
 /******************************************************************************
  *  Compilation:  javac-algs4 Percolation.java
  *  Execution:    java-algs4 Percolation
- *  Dependencies: WeightedQuickUnionUF.java
+ *  Dependencies: UnionFind.java PercolationListener.java
  *
  *  Implements percolation grid
  *
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.ArrayList;
 
 public class Percolation {
-    private final boolean[] grid;
-    private final int size, top, bottom;
-    private final WeightedQuickUnionUF wqTop, wqBottom;
+    // Bits of a site's status. OPEN is kept on every site,
+    // TOP and BOTTOM are only meaningful on the root of a component.
+    private static final byte OPEN = 1;
+    private static final byte TOP = 2;
+    private static final byte BOTTOM = 4;
+    private static final byte SPANNING = TOP | BOTTOM;
+    
+    // States of a site in a snapshot().
+    public static final byte SITE_BLOCKED = 0;
+    public static final byte SITE_OPEN = 1;
+    public static final byte SITE_FULL = 2;
+    
+    private final byte[] status;
+    private final int size;
+    private final UnionFind uf;
     private int count;
+    private boolean percolated;
+    private final ArrayList<PercolationListener> listeners = new ArrayList<>();
     
     /**
-     * Initializes a (n * n + 2) grid with all sites block
-     * The grid starts at 1 and ends at 25.
-     * Virtual top at index 0, and virtual bottom index 26.
-     * Virtual top connects to the first 5 sites(1-5), and
-     * Virtual bottom to the last 5 sites(21-25).
-     * 0 represents the site is block.
-     * The index of each site is (i // n + 1, i % n).
+     * Initializes a n-by-n grid with all sites blocked.
+     * There are no virtual sites: the root of every component
+     * remembers whether the component touches the top row and
+     * whether it touches the bottom row.
+     * The index of site (row, col) is (row - 1) * n + (col - 1).
      * 
      * @param the length of the grid
      * @throw IllegalArgumentException if n is not a positive integer
+     *        or the grid has more than Integer.MAX_VALUE sites
      */
     public Percolation(int n) {
-        if ((n <= 0) || !(n < Integer.MAX_VALUE))
+        if (n <= 0)
             throw new IllegalArgumentException("n must be larger than 0.");
-        
-        // normal case
-        int length = n * n + 2;
-        grid = new boolean[length];
-        top = 0;
-        bottom = length - 1;
-        count = 0;
-        wqTop = new WeightedQuickUnionUF(length);
-        wqBottom = new WeightedQuickUnionUF(length);
+        if ((long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("n * n must fit in an int.");
         
         size = n;
-        // Initialize grid
-        for (int i = 1; i < length-1; i++) grid[i] = false;
-        
-        // Initialze virtual sites
-        grid[top] = true;
-        grid[bottom] = true;
+        count = 0;
+        percolated = false;
+        uf = new UnionFind((long) n * n);
+        status = new byte[n * n];
     }
     
     /**
@@ -58,15 +62,20 @@ public class Percolation {
         // Validating index
         validateIndex(row, col);
         
-        return (row - 1) * size + col;
+        return (row - 1) * size + (col - 1);
     }
     
     /**
-     * Connects to both find-union objects.
+     * Merges the component of the open site j into the component
+     * with the given root, carrying over the flags of j's root.
+     * 
+     * @return the root of the merged component
      */
-    private void linkSites(int i, int j) {
-        wqTop.union(i, j);
-        wqBottom.union(i, j);
+    private int linkSites(int root, int j) {
+        int rootJ = uf.find(j);
+        int merged = uf.link(root, rootJ);
+        status[merged] |= status[root] | status[rootJ];
+        return merged;
     }
     
     /**
@@ -76,11 +85,9 @@ public class Percolation {
      */
     private void validateIndex(int row, int col) {
         if (row > size || row <= 0) {
-            // System.out.println("Row " + row + " Col " + col + " with n " + size + " and length " + length); // debug
             throw new IllegalArgumentException("Row index out of bounds.");
         }
         if (col > size || col <= 0) {
-            // System.out.println("Row " + row + " Col " + col + " with n " + size + " and length " + length); // debug
             throw new IllegalArgumentException("Column index out of bounds.");
         }
     }
@@ -91,38 +98,130 @@ public class Percolation {
      * @param the row, col coordinate of a site
      */
     public    void open(int row, int col) {
-        // Validating index
-        validateIndex(row, col);
+        openSite(getIndex(row, col), row, col);
+    }
+    
+    /**
+     * Opens the sites (rows[i], cols[i]), in order, skipping the ones
+     * that are open already. The whole batch is validated before any
+     * site is opened, so a bad entry leaves the grid untouched.
+     * Sites are opened in the given order so listeners see the same
+     * open-site count as with one open() call per site.
+     * 
+     * @param rows the row of each site
+     * @param cols the column of each site
+     * @return the number of sites that were blocked before
+     * @throw IllegalArgumentException if an array is null, the arrays
+     *        differ in length, or any site is out of bounds
+     */
+    public int openAll(int[] rows, int[] cols) {
+        if (rows == null || cols == null)
+            throw new IllegalArgumentException("Null array");
+        if (rows.length != cols.length)
+            throw new IllegalArgumentException("Rows and columns differ in length.");
+        for (int i = 0; i < rows.length; i++)
+            validateIndex(rows[i], cols[i]);
         
-        int index = getIndex(row, col);
+        int opened = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i], col = cols[i];
+            if (openSite((row - 1) * size + (col - 1), row, col)) opened++;
+        }
+        return opened;
+    }
+    
+    /**
+     * Opens the sites with the given linear indices, (row - 1) * n + (col - 1),
+     * as openAll(rows, cols) does.
+     * 
+     * @param sites the linear index of each site
+     * @return the number of sites that were blocked before
+     * @throw IllegalArgumentException if sites is null or any index
+     *        is out of bounds
+     */
+    public int openAll(int[] sites) {
+        if (sites == null)
+            throw new IllegalArgumentException("Null array");
+        return openAll(sites, 0, sites.length);
+    }
+    
+    /**
+     * Opens the sites sites[from..to), as openAll(sites) does.
+     * 
+     * @throw IllegalArgumentException if sites is null, the range is
+     *        not within the array, or any index is out of bounds
+     */
+    public int openAll(int[] sites, int from, int to) {
+        if (sites == null)
+            throw new IllegalArgumentException("Null array");
+        if (from < 0 || to > sites.length || from > to)
+            throw new IllegalArgumentException("Range out of bounds.");
+        int length = status.length;
+        for (int i = from; i < to; i++) {
+            if (sites[i] < 0 || sites[i] >= length)
+                throw new IllegalArgumentException("Site index out of bounds.");
+        }
         
+        int opened = 0;
+        for (int i = from; i < to; i++) {
+            if (openSite(sites[i])) opened++;
+        }
+        return opened;
+    }
+    
+    /**
+     * Opens the site with the given linear index, (row - 1) * n + (col - 1),
+     * if it is not open already. The index is not validated.
+     * 
+     * @return true if the site was blocked before
+     */
+    boolean openSite(int index) {
+        return openSite(index, index / size + 1, index % size + 1);
+    }
+    
+    /**
+     * Checks whether the site with the given linear index is open.
+     * The index is not validated.
+     */
+    boolean isOpenSite(int index) {
+        return (status[index] & OPEN) != 0;
+    }
+    
+    /**
+     * Opens site index, which lies at (row, col).
+     * 
+     * @return true if the site was blocked before
+     */
+    private boolean openSite(int index, int row, int col) {
         // Check if already open
-        if (isOpen(row, col))
-            return;
-        // 0 means blocked. 1 means opened.
-        grid[index] = true;
+        if ((status[index] & OPEN) != 0)
+            return false;
+        status[index] = OPEN;
         count++;
         
-        // Union action after opening a site.
-        if (row == 1) // top row
-            // weightedQU.union(top, index);
-            linkSites(top, index);
+        if (row == 1) status[index] |= TOP;
+        if (row == size) status[index] |= BOTTOM;
+        
+        // The new site is its own root until it is linked, and
+        // the root is tracked through the links so no final find is needed.
+        int root = index;
+        if (row > 1 && (status[index - size] & OPEN) != 0) // up site
+            root = linkSites(root, index - size);
+        if (row < size && (status[index + size] & OPEN) != 0) // down site
+            root = linkSites(root, index + size);
+        if (col > 1 && (status[index - 1] & OPEN) != 0) // left site
+            root = linkSites(root, index - 1);
+        if (col < size && (status[index + 1] & OPEN) != 0) // right site
+            root = linkSites(root, index + 1);
         
-        //    weightedQU.union(length-1, index);
-        if (row > 1 && isOpen(row-1, col)) // up site
-            // weightedQU.union(index, getIndex(row-1, col));
-            linkSites(index, getIndex(row-1, col));
-        if (row < size && isOpen(row+1, col)) // down site
-            // weightedQU.union(index, getIndex(row+1, col));
-            linkSites(index, getIndex(row+1, col));
-        if (col > 1 && isOpen(row, col-1)) // left site
-            // weightedQU.union(index, getIndex(row, col-1));
-            linkSites(index, getIndex(row, col-1));
-        if (col < size && isOpen(row, col+1)) // right site
-            // weightedQU.union(index, getIndex(row, col+1));
-            linkSites(index, getIndex(row, col+1));
-        if (row == size) 
-            wqBottom.union(bottom, index);
+        if (!percolated && (status[root] & SPANNING) == SPANNING) {
+            percolated = true;
+            // over a copy, so a listener may add or remove listeners
+            for (PercolationListener listener
+                     : listeners.toArray(new PercolationListener[listeners.size()]))
+                listener.percolated(count);
+        }
+        return true;
     }
     
     /**
@@ -131,34 +230,24 @@ public class Percolation {
      * @param the row, col coordinate of a site
      */
     public boolean isOpen(int row, int col) {
-        // Validating index
-        validateIndex(row, col);
-        
-        int index = getIndex(row, col);
-        if (grid[index]) return true;
-        // else return false;
-        return false;
+        return (status[getIndex(row, col)] & OPEN) != 0;
     }
     
     /**
-     * Check whether the site is open and is connected
-     * to any open site(or the virtual top) in the top row.
+     * Check whether the site is open and its component
+     * touches the top row.
      * 
      * @param the row, col coordinate of a site
      */
     public boolean isFull(int row, int col)  {
-        // Validating index
-        validateIndex(row, col);
-        
         int index = getIndex(row, col);
-        if (wqTop.connected(top, index) && isOpen(row, col))
-            return true;
-        return false;
+        if ((status[index] & OPEN) == 0)
+            return false;
+        return (status[uf.find(index)] & TOP) != 0;
     }
     
     /**
-     * Counts the number of open sites,
-     * excluding the virtual sites.
+     * Counts the number of open sites.
      */
     public int numberOfOpenSites() {
         return count;
@@ -166,9 +255,72 @@ public class Percolation {
     
     /**
      * Checks whether the grid has percolated.
+     * The answer is kept up to date by open(), so this is O(1).
      */
     public boolean percolates() {
-        return wqBottom.connected(top, bottom);
+        return percolated;
+    }
+    
+    /**
+     * Returns the state of every site, SITE_BLOCKED, SITE_OPEN or
+     * SITE_FULL, at its linear index (row - 1) * n + (col - 1).
+     * 
+     * @see #snapshot(byte[])
+     */
+    public byte[] snapshot() {
+        return snapshot(new byte[status.length]);
+    }
+    
+    /**
+     * Writes the state of every site into the given array, which can be
+     * reused from frame to frame, and returns it.
+     * Sites are visited in index order, and a site whose parent was
+     * visited before it copies the parent's state, so each component
+     * is resolved by a find from only a few of its sites.
+     * 
+     * @param states an array of n * n entries
+     * @return states
+     * @throw IllegalArgumentException if states has the wrong length
+     */
+    public byte[] snapshot(byte[] states) {
+        if (states == null || states.length != status.length)
+            throw new IllegalArgumentException("Snapshot needs n * n entries.");
+        
+        for (int i = 0; i < states.length; i++) {
+            if ((status[i] & OPEN) == 0) {
+                states[i] = SITE_BLOCKED;
+                continue;
+            }
+            int parent = uf.parent(i);
+            if (parent < i) {
+                // same component, already resolved
+                states[i] = states[parent];
+                continue;
+            }
+            int root = parent == i ? i : uf.find(i);
+            states[i] = (status[root] & TOP) != 0 ? SITE_FULL : SITE_OPEN;
+        }
+        return states;
+    }
+    
+    /**
+     * Registers a listener to be told when the grid first percolates.
+     * A listener added after that moment is never called.
+     * 
+     * @param listener the listener
+     * @throw IllegalArgumentException if listener is null
+     */
+    public void addPercolationListener(PercolationListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("Null listener");
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregisters a listener added by addPercolationListener().
+     */
+    public void removePercolationListener(PercolationListener listener) {
+        listeners.remove(listener);
     }
     
     /**
@@ -184,5 +336,26 @@ public class Percolation {
         // perc.isFull(1, 1);
         // System.out.println(perc.percolates());
         // System.out.println(perc.percolates()); // false
+        
+        // Every listener is called once, even if one removes itself
+        // from inside percolated().
+        final Percolation perc = new Percolation(2);
+        final int[] calls = new int[3];
+        for (int i = 0; i < calls.length; i++) {
+            final int which = i;
+            perc.addPercolationListener(new PercolationListener() {
+                public void percolated(int openSites) {
+                    calls[which]++;
+                    perc.removePercolationListener(this);
+                }
+            });
+        }
+        perc.open(1, 1);
+        perc.open(2, 1);
+        for (int i = 0; i < calls.length; i++) {
+            if (calls[i] != 1)
+                throw new AssertionError("listener " + i + " called " + calls[i] + " times");
+        }
+        System.out.println("listeners OK");
     }
 }
\ No newline at end of file
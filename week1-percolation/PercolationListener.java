@@ -0,0 +1,18 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationListener.java
+ *  Execution:    none
+ *  Dependencies: none
+ *
+ *  Callback for the moment a percolation system first percolates.
+ *
+ ******************************************************************************/
+
+public interface PercolationListener {
+    /**
+     * Called once, from the open() call that makes the system percolate.
+     *
+     * @param openSites the number of open sites, including the one
+     *        just opened
+     */
+    void percolated(int openSites);
+}
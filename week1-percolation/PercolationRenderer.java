@@ -0,0 +1,280 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 PercolationRenderer.java
+ *  Execution:    java-algs4 PercolationRenderer input.txt [cell [fps [steps]]]
+ *                java-algs4 PercolationRenderer input.txt [cell] -png step1,step2,...
+ *  Dependencies: Percolation.java In.java
+ *
+ *  Draws a percolation system into the int[] pixel buffer of a
+ *  BufferedImage, with the same colors as PercolationVisualizer:
+ *  full sites in light blue, open sites in white, blocked sites in black.
+ *
+ *  Only the sites whose state changed since the last frame are painted,
+ *  so a long input plays back without an O(n^2) redraw per site.
+ *  step() renders a frame only when one is due for the target frame
+ *  rate and skips it otherwise; awaitFrame() sleeps until the next one
+ *  is due. The window plays the input at the target frame rate, steps
+ *  sites per frame (by default the whole grid in about 300 frames).
+ *
+ *  With -png no window is opened; the image is written to
+ *  input-step.png after each of the given steps (0 for the empty grid,
+ *  -1 for the end of the input).
+ *
+ ******************************************************************************/
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+import edu.princeton.cs.algs4.In;
+
+public class PercolationRenderer {
+    // colors of PercolationVisualizer (StdDraw.BLACK, WHITE, BOOK_LIGHT_BLUE),
+    // indexed by Percolation.SITE_BLOCKED, SITE_OPEN and SITE_FULL
+    private static final int[] COLORS = { 0x000000, 0xFFFFFF, 0x67C6F3 };
+
+    private final Percolation perc;
+    private final int n, cell;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final byte[] drawn;      // state of each site in the image
+    private final byte[] states;     // snapshot of the system
+    private final long frameNanos;
+    private long lastFrame;
+    private int frames, skipped;
+    private JComponent view;
+
+    /**
+     * Prepares a renderer of perc, drawn with cell pixels per site.
+     *
+     * @param perc the system to draw
+     * @param n the size of the system
+     * @param cell the width of a site in pixels
+     * @param fps the target frame rate of step(), 0 to render every step
+     * @throw IllegalArgumentException if cell is not positive, the image
+     *        would be too large, or fps is negative
+     */
+    public PercolationRenderer(Percolation perc, int n, int cell, double fps) {
+        if (perc == null)
+            throw new IllegalArgumentException("Null percolation");
+        if (cell <= 0 || (long) n * cell * n * cell > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Illegal cell size");
+        if (fps < 0)
+            throw new IllegalArgumentException("Illegal frame rate");
+
+        this.perc = perc;
+        this.n = n;
+        this.cell = cell;
+        this.frameNanos = fps == 0 ? 0 : (long) (1e9 / fps);
+        image = new BufferedImage(n * cell, n * cell, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        drawn = new byte[n * n];       // all blocked, and the image is all black
+        states = new byte[n * n];
+        lastFrame = System.nanoTime();
+    }
+
+    /**
+     * Renders a frame if one is due for the target frame rate,
+     * and skips it otherwise. Call after every change to the system.
+     *
+     * @return true if a frame was rendered
+     */
+    public boolean step() {
+        long now = System.nanoTime();
+        if (now - lastFrame < frameNanos) {
+            skipped++;
+            return false;
+        }
+        render();
+        lastFrame = now;
+        return true;
+    }
+
+    /**
+     * Sleeps until the next frame is due for the target frame rate,
+     * then renders it, so that frames are paced at that rate.
+     */
+    public void awaitFrame() {
+        long due = lastFrame + frameNanos;
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        render();
+        // keep to the schedule, unless a whole frame behind
+        long now = System.nanoTime();
+        lastFrame = now - due < frameNanos ? due : now;
+    }
+
+    /**
+     * Brings the image up to date with the system, painting
+     * only the sites whose state changed.
+     */
+    public void render() {
+        perc.snapshot(states);
+        for (int site = 0; site < states.length; site++) {
+            if (states[site] != drawn[site]) {
+                drawn[site] = states[site];
+                paint(site / n, site % n, COLORS[states[site]]);
+            }
+        }
+        frames++;
+        if (view != null) view.repaint();
+    }
+
+    /**
+     * Fills the cell of site (row, col), 0-based, leaving a one-pixel
+     * black border at the right and bottom once cells are large enough
+     * to show the grid.
+     */
+    private void paint(int row, int col, int rgb) {
+        int width = n * cell;
+        int inner = cell >= 3 ? cell - 1 : cell;
+        int offset = row * cell * width + col * cell;
+        for (int y = 0; y < inner; y++) {
+            int start = offset + y * width;
+            Arrays.fill(pixels, start, start + inner, rgb);
+        }
+    }
+
+    /**
+     * Returns the image the system is drawn into.
+     */
+    public BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * Returns the number of frames rendered.
+     */
+    public int frames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of frames skipped by step().
+     */
+    public int skipped() {
+        return skipped;
+    }
+
+    /**
+     * Writes the current image as a PNG file.
+     */
+    public void writePng(String file) {
+        try {
+            ImageIO.write(image, "png", new File(file));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Shows the image in a window, repainted after every rendered frame.
+     */
+    public void show(String title) {
+        final JComponent component = new JComponent() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                g.drawImage(image, 0, 0, null);
+            }
+        };
+        component.setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
+        view = component;
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                JFrame frame = new JFrame(title);
+                frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+                frame.add(component);
+                frame.pack();
+                frame.setVisible(true);
+            }
+        });
+    }
+
+    public static void main(String[] args) {
+        In in = new In(args[0]);      // input file
+        int n = in.readInt();         // n-by-n percolation system
+
+        // [cell [fps [steps]]] by position, and -png steps anywhere after the file
+        boolean headless = false;
+        String pngSteps = null;
+        double[] numbers = { Math.max(1, 800 / n), 30, Math.max(1, (long) n * n / 300) };
+        int given = 0;
+        for (int a = 1; a < args.length; a++) {
+            if (args[a].equals("-png")) {
+                if (a + 1 == args.length)
+                    throw new IllegalArgumentException("-png needs a list of steps");
+                headless = true;
+                pngSteps = args[++a];
+            }
+            else if (given < numbers.length) {
+                numbers[given++] = Double.parseDouble(args[a]);
+            }
+            else {
+                throw new IllegalArgumentException("Unexpected argument: " + args[a]);
+            }
+        }
+        int cell = (int) numbers[0];
+        double fps = numbers[1];
+        long stepsPerFrame = Math.max(1, (long) numbers[2]);
+
+        // steps after which to write a snapshot
+        long[] snapshots = new long[0];
+        if (headless) {
+            String[] steps = pngSteps.split(",");
+            snapshots = new long[steps.length];
+            for (int i = 0; i < steps.length; i++) snapshots[i] = Long.parseLong(steps[i]);
+        }
+        String prefix = args[0].replaceFirst("\\.txt$", "");
+
+        Percolation perc = new Percolation(n);
+        PercolationRenderer renderer = new PercolationRenderer(perc, n, cell, fps);
+        if (!headless) renderer.show(args[0]);
+
+        long step = 0;
+        snapshot(renderer, snapshots, step, prefix);
+        while (!in.isEmpty()) {
+            int i = in.readInt();
+            int j = in.readInt();
+            perc.open(i, j);
+            step++;
+            if (headless) snapshot(renderer, snapshots, step, prefix);
+            else if (step % stepsPerFrame == 0) renderer.awaitFrame();
+        }
+        renderer.render();
+        for (long s : snapshots) {
+            if (s == -1) renderer.writePng(prefix + "-" + step + ".png");
+        }
+        System.out.println(step + " steps, " + renderer.frames() + " frames");
+    }
+
+    /**
+     * Writes input-step.png if step is one of the snapshot steps.
+     */
+    private static void snapshot(PercolationRenderer renderer, long[] snapshots,
+                                 long step, String prefix) {
+        for (long s : snapshots) {
+            if (s == step) {
+                renderer.render();
+                renderer.writePng(prefix + "-" + step + ".png");
+                return;
+            }
+        }
+    }
+}
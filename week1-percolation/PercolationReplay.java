@@ -0,0 +1,302 @@
+/******************************************************************************
+ *  Compilation:  javac PercolationReplay.java
+ *  Execution:    java PercolationReplay input.txt
+ *                java PercolationReplay input.bin
+ *                java PercolationReplay -convert input.txt output.bin
+ *  Dependencies: Percolation.java PercolationListener.java
+ *
+ *  Replays a sequence of sites to open without drawing anything, and
+ *  reports the step at which the system percolates.
+ *
+ *  The input is memory-mapped and integers are parsed straight from the
+ *  mapped bytes, so no String is created per token. Files larger than
+ *  2 GB are mapped one window at a time.
+ *
+ *  Two input formats are accepted:
+ *
+ *    - text, as read by PercolationVisualizer: the grid size n followed
+ *      by (row, col) pairs separated by whitespace.
+ *    - binary: the int MAGIC, the int n, then one int per step holding
+ *      the linear index (row - 1) * n + (col - 1), all big-endian.
+ *      -convert writes this format from a text file.
+ *
+ ******************************************************************************/
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+public class PercolationReplay {
+    // "PERC" in ASCII, first int of a binary log
+    public static final int MAGIC = 0x50455243;
+
+    // sites handed to Percolation.openAll() at a time
+    private static final int BATCH = 1 << 16;
+
+    // largest part of a file mapped at once
+    private static final long WINDOW = 1L << 30;
+
+    private final Percolation perc;
+    private final int n;
+    private final int[] batch = new int[BATCH];
+    private final boolean[] wasOpen = new boolean[BATCH];
+    private int batchSize;
+    private long steps;
+    private long percolationStep;
+    private int percolationSites;
+
+    /**
+     * Prepares the replay of a n-by-n system.
+     */
+    private PercolationReplay(int n) {
+        this.n = n;
+        perc = new Percolation(n);
+        perc.addPercolationListener(new PercolationListener() {
+            @Override
+            public void percolated(int openSites) {
+                percolationSites = openSites;
+            }
+        });
+    }
+
+    /**
+     * Adds the site with linear index site to the current batch.
+     */
+    private void add(int site) {
+        batch[batchSize++] = site;
+        if (batchSize == BATCH) flush();
+    }
+
+    /**
+     * Opens the sites of the current batch.
+     * Until the system percolates, the open state of each site is
+     * recorded first, so the step that percolated can be found again.
+     */
+    private void flush() {
+        if (batchSize == 0) return;
+        boolean before = perc.percolates();
+        if (!before) {
+            int sites = n * n;
+            for (int i = 0; i < batchSize; i++) {
+                // openAll() checks the indices too, but only after this
+                if (batch[i] < 0 || batch[i] >= sites)
+                    throw new IllegalArgumentException("Site index out of bounds.");
+                wasOpen[i] = perc.isOpenSite(batch[i]);
+            }
+        }
+        int openBefore = perc.numberOfOpenSites();
+        perc.openAll(batch, 0, batchSize);
+        if (!before && perc.percolates())
+            percolationStep = steps + findStep(percolationSites - openBefore);
+        steps += batchSize;
+        batchSize = 0;
+    }
+
+    /**
+     * Finds the 1-based position within the current batch of the
+     * opened-th site that was blocked before the batch.
+     */
+    private int findStep(int opened) {
+        BitSet seen = new BitSet();
+        int distinct = 0;
+        for (int i = 0; i < batchSize; i++) {
+            if (wasOpen[i] || seen.get(batch[i])) continue;
+            seen.set(batch[i]);
+            if (++distinct == opened) return i + 1;
+        }
+        throw new IllegalStateException("Percolating step not found");
+    }
+
+   /***************************************************************************
+    *  Input formats
+    ***************************************************************************/
+
+    /**
+     * Replays the file, text or binary.
+     */
+    private static PercolationReplay replay(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                                                    StandardOpenOption.READ)) {
+            if (isBinary(channel)) return replayBinary(channel);
+            return replayText(channel);
+        }
+    }
+
+    /**
+     * Checks whether the file starts with MAGIC.
+     */
+    private static boolean isBinary(FileChannel channel) throws IOException {
+        if (channel.size() < 8) return false;
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, 4).getInt() == MAGIC;
+    }
+
+    private static PercolationReplay replayText(FileChannel channel) throws IOException {
+        MappedInts in = new MappedInts(channel);
+        if (!in.hasNext())
+            throw new IllegalArgumentException("Empty input");
+        int n = in.nextInt();
+        PercolationReplay replay = new PercolationReplay(n);
+        while (in.hasNext()) {
+            int row = in.nextInt();
+            if (!in.hasNext())
+                throw new IllegalArgumentException("Row " + row + " without a column");
+            int col = in.nextInt();
+            if (row <= 0 || row > n || col <= 0 || col > n)
+                throw new IllegalArgumentException("Site (" + row + ", " + col
+                                                   + ") out of bounds.");
+            replay.add((row - 1) * n + (col - 1));
+        }
+        replay.flush();
+        return replay;
+    }
+
+    private static PercolationReplay replayBinary(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int n = channel.map(FileChannel.MapMode.READ_ONLY, 4, 4).getInt();
+        PercolationReplay replay = new PercolationReplay(n);
+
+        // Windows are a multiple of 4 bytes, so no int is split
+        long end = 8 + (size - 8) / 4 * 4;
+        for (long position = 8; position < end; position += WINDOW) {
+            long length = Math.min(WINDOW, end - position);
+            IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY,
+                                         position, length).asIntBuffer();
+            while (ints.hasRemaining()) {
+                int count = Math.min(BATCH - replay.batchSize, ints.remaining());
+                ints.get(replay.batch, replay.batchSize, count);
+                replay.batchSize += count;
+                if (replay.batchSize == BATCH) replay.flush();
+            }
+        }
+        replay.flush();
+        return replay;
+    }
+
+    /**
+     * Writes the text file in as the binary file out.
+     */
+    private static void convert(String in, String out) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(in),
+                                                    StandardOpenOption.READ);
+             DataOutputStream data = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(out), 1 << 16))) {
+            MappedInts ints = new MappedInts(channel);
+            int n = ints.nextInt();
+            data.writeInt(MAGIC);
+            data.writeInt(n);
+            while (ints.hasNext()) {
+                int row = ints.nextInt();
+                int col = ints.nextInt();
+                if (row <= 0 || row > n || col <= 0 || col > n)
+                    throw new IllegalArgumentException("Site (" + row + ", " + col
+                                                       + ") out of bounds.");
+                data.writeInt((row - 1) * n + (col - 1));
+            }
+        }
+    }
+
+    /**
+     * Reads whitespace-separated decimal integers from a file,
+     * mapping it one window at a time.
+     */
+    private static class MappedInts {
+        private final FileChannel channel;
+        private final long size;
+        private long next;            // file position of the next window
+        private MappedByteBuffer buffer;
+
+        MappedInts(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.next = 0;
+        }
+
+        /**
+         * Makes sure a byte is available, mapping the next window if needed.
+         */
+        private boolean fill() {
+            if (buffer != null && buffer.hasRemaining()) return true;
+            if (next >= size) return false;
+            long length = Math.min(WINDOW, size - next);
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, next, length);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            next += length;
+            return true;
+        }
+
+        /**
+         * Skips whitespace and checks whether another integer follows.
+         */
+        boolean hasNext() {
+            while (fill()) {
+                byte b = buffer.get(buffer.position());
+                if (b > ' ') return true;
+                buffer.get();
+            }
+            return false;
+        }
+
+        int nextInt() {
+            if (!hasNext())
+                throw new IllegalArgumentException("Unexpected end of input");
+            boolean negative = false;
+            if (buffer.get(buffer.position()) == '-') {
+                negative = true;
+                buffer.get();
+            }
+            long value = 0;
+            int digits = 0;
+            while (fill()) {
+                byte b = buffer.get(buffer.position());
+                if (b < '0' || b > '9') break;
+                value = value * 10 + (b - '0');
+                if (value > Integer.MAX_VALUE + 1L)
+                    throw new IllegalArgumentException("Integer too large");
+                buffer.get();
+                digits++;
+            }
+            if (digits == 0 || (fill() && buffer.get(buffer.position()) > ' '))
+                throw new IllegalArgumentException("Not an integer");
+            if (negative) value = -value;
+            if (value > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Integer too large");
+            return (int) value;
+        }
+    }
+
+   /***************************************************************************
+    *  Command line
+    ***************************************************************************/
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("-convert")) {
+            convert(args[1], args[2]);
+            return;
+        }
+
+        long start = System.nanoTime();
+        PercolationReplay replay = replay(args[0]);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("n = " + replay.n + ", " + replay.steps + " steps, "
+                           + replay.perc.numberOfOpenSites() + " open sites");
+        if (replay.perc.percolates())
+            System.out.println("percolates at step " + replay.percolationStep
+                               + " with " + replay.percolationSites + " open sites");
+        else
+            System.out.println("does not percolate");
+        System.out.printf("%.3f seconds%n", seconds);
+    }
+}
@@ -1,61 +1,229 @@
 /******************************************************************************
  *  Compilation:  javac-algs4 PercolationStats.java
- *  Execution:    java-algs4 PercolationStats
- *  Dependencies: StdRandom.java StdStats.java
+ *  Execution:    java-algs4 PercolationStats n trials [seed threads [sampling]]
+ *  Dependencies: Percolation.java UnionFind.java RandomSource.java
+ *                StdRandom.java StdStats.java
  *
  *  Implements percolation statistics.
+ *  With more than one thread, trials run on a fork-join pool of that
+ *  many threads, and with one in a plain loop in the caller. Every
+ *  trial draws from its own RandomSource stream split off the seed,
+ *  so the statistics do not depend on the number of threads.
+ *  Sampling PERMUTATION opens the sites in the order of a random
+ *  permutation instead of drawing (row, col) pairs with replacement.
  *
  ******************************************************************************/
 
 import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.StdStats;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class PercolationStats {
+    /**
+     * How a trial picks the next site to open.
+     * REJECTION draws (row, col) pairs uniformly and skips open sites;
+     * PERMUTATION walks a random permutation of the sites, built lazily
+     * by a partial Fisher-Yates shuffle, so every draw opens a new site.
+     */
+    public enum Sampling { REJECTION, PERMUTATION }
+    
     private final double[] thresholdPerTrial;
     private final double trialNums;
     private final double mu, sigma;
     private final double a;
+    
+    // leaves of the fork-join split per worker thread
+    private static final int TASKS_PER_THREAD = 8;
+    
     /**
      * Initializes a PercolationStats object, and
      * performs trails independent experiments on
-     * a n-by-n lattice.
+     * a n-by-n lattice. The random streams are seeded
+     * from StdRandom, so StdRandom.setSeed() repeats a run.
+     * The trials run one after another in the caller's thread,
+     * with no fork-join pool, as in the assignment's API.
      * 
      * @param n: the size of the lattice.
      * @param trials: number of trials to be conducted.
      */
     public PercolationStats(int n, int trials) {
+        // threads = 1 is the plain loop of runTrials()
+        this(n, trials, RandomSource.splittable(StdRandom.uniform(Integer.MAX_VALUE)),
+             1, Sampling.REJECTION);
+    }
+    
+    /**
+     * Initializes a PercolationStats object, and performs trials
+     * independent experiments on a n-by-n lattice, spread across
+     * a fork-join pool of threads workers, or in the caller's
+     * thread if threads is 1.
+     * Trial i always draws from the i-th stream split off seed, so
+     * the results are the same for any number of threads.
+     * 
+     * @param n: the size of the lattice.
+     * @param trials: number of trials to be conducted.
+     * @param seed: seed of the random streams.
+     * @param threads: number of worker threads; 1 runs the trials in
+     *                 a plain loop in the caller, with no pool.
+     */
+    public PercolationStats(int n, int trials, long seed, int threads) {
+        this(n, trials, seed, threads, Sampling.REJECTION);
+    }
+    
+    /**
+     * Same as PercolationStats(n, trials, seed, threads), with the
+     * given way of picking sites.
+     * 
+     * @param sampling: how the sites to open are drawn.
+     */
+    public PercolationStats(int n, int trials, long seed, int threads,
+                            Sampling sampling) {
+        this(n, trials, RandomSource.splittable(seed), threads, sampling);
+    }
+    
+    /**
+     * Same as PercolationStats(n, trials, seed, threads, sampling),
+     * with the streams of the trials split off random, in trial order.
+     * 
+     * @param random: the source the streams of the trials are split from.
+     */
+    public PercolationStats(int n, int trials, RandomSource random, int threads,
+                            Sampling sampling) {
         // Check arguments.
-        if (trials <= 0 || !(trials < Integer.MAX_VALUE)) 
-            throw new IllegalArgumentException("Illegal trials value");
-
-        // Declares some variables.
-        int index, row, col;
-        double opened;
-        double totalGrids;
+        validateTrials(trials);
+        if (random == null)
+            throw new IllegalArgumentException("Null random source");
+        if (threads <= 0)
+            throw new IllegalArgumentException("Illegal threads value");
+        if (sampling == null)
+            throw new IllegalArgumentException("Null sampling");
         
-        // Keeps track of the test results.
         thresholdPerTrial = new double[trials];
         trialNums = trials;
-        totalGrids = n * n;
         a = 1.96;
         
-        // Iterates trials
-        for (int i = 0; i < trials; i++) {
-            // Creates a new Percolation object.
-            Percolation perc = new Percolation(n);
-            // Randomly open a site until percolation.
-            while (!perc.percolates()) {
-                row = StdRandom.uniform(1, n+1);
-                col = StdRandom.uniform(1, n+1);
-                perc.open(row, col);
+        // Splits one stream per trial up front, in trial order.
+        RandomSource[] streams = new RandomSource[trials];
+        for (int i = 0; i < trials; i++) streams[i] = random.split();
+        
+        if (threads == 1) {
+            runTrials(n, sampling, streams, 0, trials);
+        }
+        else {
+            // about TASKS_PER_THREAD leaves per thread, to even out the load
+            int grain = Math.max(1, trials / (TASKS_PER_THREAD * threads));
+            TrialTask task = new TrialTask(n, sampling, streams, 0, trials, grain);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(task);
+            }
+            finally {
+                pool.shutdown();
             }
-            opened = perc.numberOfOpenSites();
-            thresholdPerTrial[i] = opened / totalGrids;
         }
         mu = mean();
         sigma = stddev();
     }
     
+    /**
+     * Runs trials [lo, hi) one after another in the current thread.
+     */
+    private void runTrials(int n, Sampling sampling, RandomSource[] streams,
+                           int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+            if (sampling == Sampling.PERMUTATION)
+                thresholdPerTrial[i] = runPermutationTrial(n, streams[i]);
+            else
+                thresholdPerTrial[i] = runTrial(n, streams[i]);
+        }
+    }
+    
+    /**
+     * Runs trials [lo, hi) by splitting the range in halves
+     * until at most grain trials are left.
+     */
+    private class TrialTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int n, lo, hi, grain;
+        private final Sampling sampling;
+        private final RandomSource[] streams;
+        
+        TrialTask(int n, Sampling sampling, RandomSource[] streams,
+                  int lo, int hi, int grain) {
+            this.n = n;
+            this.sampling = sampling;
+            this.streams = streams;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+        
+        @Override
+        protected void compute() {
+            if (hi - lo <= grain) {
+                runTrials(n, sampling, streams, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new TrialTask(n, sampling, streams, lo, mid, grain),
+                      new TrialTask(n, sampling, streams, mid, hi, grain));
+        }
+    }
+    
+    /**
+     * Opens random sites of a new n-by-n lattice until it percolates.
+     * 
+     * @param n: the size of the lattice.
+     * @param random: the stream the sites are drawn from.
+     * @return the fraction of open sites at percolation.
+     */
+    private static double runTrial(int n, RandomSource random) {
+        Percolation perc = new Percolation(n);
+        while (!perc.percolates()) {
+            int row = random.uniform(1, n+1);
+            int col = random.uniform(1, n+1);
+            perc.open(row, col);
+        }
+        return (double) perc.numberOfOpenSites() / ((double) n * n);
+    }
+    
+    /**
+     * Opens the sites of a new n-by-n lattice in random order,
+     * without repetition, until it percolates. The k-th step swaps
+     * a random site from order[k..] into order[k], so only the
+     * prefix that is actually opened gets shuffled.
+     * order[j] holds site + 1, and 0 stands for the untouched
+     * site j, which saves filling in the identity permutation.
+     * 
+     * @param n: the size of the lattice.
+     * @param random: the stream the sites are drawn from.
+     * @return the fraction of open sites at percolation, that is
+     *         the index of the step that percolated over n * n.
+     */
+    private static double runPermutationTrial(int n, RandomSource random) {
+        Percolation perc = new Percolation(n);
+        int sites = n * n;
+        int[] order = new int[sites];
+        int k = 0;
+        while (!perc.percolates()) {
+            int j = k + random.uniform(sites - k);
+            int site = order[j] == 0 ? j : order[j] - 1;
+            order[j] = order[k] == 0 ? k + 1 : order[k];
+            perc.openSite(site);
+            k++;
+        }
+        return (double) k / sites;
+    }
+    
+    /**
+     * Checks the number of trials.
+     */
+    private static void validateTrials(int trials) {
+        if (trials <= 0 || !(trials < Integer.MAX_VALUE)) 
+            throw new IllegalArgumentException("Illegal trials value");
+    }
+    
     /**
      * Computes the sample mean of percolation thresholds.
      */
@@ -87,7 +255,16 @@ public class PercolationStats {
     public static void main(String[] args) {
         int n = Integer.parseInt(args[0]);
         int trials = Integer.parseInt(args[1]);
-        PercolationStats ps = new PercolationStats(n, trials);
+        PercolationStats ps;
+        if (args.length >= 5)
+            ps = new PercolationStats(n, trials, Long.parseLong(args[2]),
+                                      Integer.parseInt(args[3]),
+                                      Sampling.valueOf(args[4]));
+        else if (args.length >= 4)
+            ps = new PercolationStats(n, trials, Long.parseLong(args[2]),
+                                      Integer.parseInt(args[3]));
+        else
+            ps = new PercolationStats(n, trials);
         System.out.println("mean\t\t\t= " + ps.mu);
         System.out.println("stddev\t\t\t= " + ps.sigma);
         System.out.println("95% confidence interval = [" + ps.confidenceLo() 
@@ -1,7 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac PercolationVisualizer.java
  *  Execution:    java PercolationVisualizer input.txt
- *  Dependencies: Percolation.java
+ *  Dependencies: Percolation.java PercolationListener.java
  *
  *  This program takes the name of a file as a command-line argument.
  *  From that file, it
@@ -13,6 +13,8 @@
  *  After each site is opened, it draws full sites in light blue,
  *  open sites (that aren't full) in white, and blocked sites in black,
  *  with with site (1, 1) in the upper left-hand corner.
+ *  The number of open sites at which the system percolates is
+ *  printed to standard output.
  *
  ******************************************************************************/
 
@@ -20,6 +22,7 @@ import java.awt.Font;
 
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.StdOut;
 
 public class PercolationVisualizer {
 
@@ -34,15 +37,17 @@ public class PercolationVisualizer {
         StdDraw.setYscale(-0.05*n, 1.05*n);   // leave a border to write text
         StdDraw.filledSquare(n/2.0, n/2.0, n/2.0);
 
-        // draw n-by-n grid
+        // draw n-by-n grid from one snapshot of all sites
+        byte[] states = perc.snapshot();
         int opened = 0;
         for (int row = 1; row <= n; row++) {
             for (int col = 1; col <= n; col++) {
-                if (perc.isFull(row, col)) {
+                byte state = states[(row - 1) * n + (col - 1)];
+                if (state == Percolation.SITE_FULL) {
                     StdDraw.setPenColor(StdDraw.BOOK_LIGHT_BLUE);
                     opened++;
                 }
-                else if (perc.isOpen(row, col)) {
+                else if (state == Percolation.SITE_OPEN) {
                     StdDraw.setPenColor(StdDraw.WHITE);
                     opened++;
                 }
@@ -70,6 +75,12 @@ public class PercolationVisualizer {
 
         // repeatedly read in sites to open and draw resulting system
         Percolation perc = new Percolation(n);
+        perc.addPercolationListener(new PercolationListener() {
+            @Override
+            public void percolated(int openSites) {
+                StdOut.println("percolates after " + openSites + " open sites");
+            }
+        });
         draw(perc, n);
         StdDraw.show();
         StdDraw.pause(DELAY);
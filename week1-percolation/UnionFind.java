@@ -0,0 +1,127 @@
+/******************************************************************************
+ *  Compilation:  javac UnionFind.java
+ *  Execution:    java UnionFind
+ *  Dependencies: none
+ *
+ *  Implements union-find with union by rank and path halving.
+ *  Ranks are kept in a byte[] (a rank never exceeds 31), so the
+ *  structure costs 5 bytes per element instead of the 8 bytes of
+ *  parent[] and size[] in WeightedQuickUnionUF.
+ *
+ ******************************************************************************/
+
+public class UnionFind {
+    private final int[] parent; // parent[i] = parent of i
+    private final byte[] rank;  // rank[i] = upper bound of the height of i
+    private int count;          // number of components
+
+    /**
+     * Initializes n elements, each in its own component.
+     * The size is given as a long so callers can pass a product
+     * such as n * n without overflowing first.
+     *
+     * @param n the number of elements
+     * @throw IllegalArgumentException if n is negative or does not fit
+     *        in an array
+     */
+    public UnionFind(long n) {
+        if (n < 0 || n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Illegal number of elements: " + n);
+
+        count = (int) n;
+        parent = new int[count];
+        rank = new byte[count];
+        for (int i = 0; i < count; i++) parent[i] = i;
+    }
+
+    /**
+     * Returns the number of components.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the root of the component containing p.
+     * Every visited element is pointed at its grandparent
+     * on the way up (path halving).
+     *
+     * @param p an element
+     */
+    public int find(int p) {
+        validate(p);
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * Returns the parent of p without validating it, for callers that
+     * walk every element and can reuse what they found for the parent.
+     */
+    int parent(int p) {
+        return parent[p];
+    }
+
+    /**
+     * Checks whether p and q are in the same component.
+     */
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    /**
+     * Merges the components containing p and q.
+     *
+     * @return the root of the merged component
+     */
+    public int union(int p, int q) {
+        return link(find(p), find(q));
+    }
+
+    /**
+     * Merges two components given by their roots, skipping the
+     * finds of union(). Callers must pass roots.
+     *
+     * @return the root of the merged component
+     */
+    int link(int rootP, int rootQ) {
+        if (rootP == rootQ) return rootP;
+        count--;
+
+        // Hangs the shorter tree below the taller one
+        if (rank[rootP] < rank[rootQ]) {
+            parent[rootP] = rootQ;
+            return rootQ;
+        }
+        parent[rootQ] = rootP;
+        if (rank[rootP] == rank[rootQ]) rank[rootP]++;
+        return rootP;
+    }
+
+    /**
+     * Validates the element.
+     */
+    private void validate(int p) {
+        if (p < 0 || p >= parent.length)
+            throw new IllegalArgumentException("Index " + p + " out of bounds.");
+    }
+
+    /**
+     * Unit tests the {@code UnionFind} data type.
+     *
+     * @param args the command-line arguments.
+     */
+    public static void main(String[] args) {
+        UnionFind uf = new UnionFind(10);
+        uf.union(4, 3);
+        uf.union(3, 8);
+        uf.union(6, 5);
+        uf.union(9, 4);
+        System.out.println(uf.connected(8, 9)); // true
+        System.out.println(uf.connected(5, 4)); // false
+        System.out.println(uf.count());         // 6
+    }
+}
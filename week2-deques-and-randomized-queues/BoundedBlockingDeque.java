@@ -0,0 +1,338 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 BoundedBlockingDeque.java
+ *  Execution:    java-algs4 BoundedBlockingDeque [items] [producers] [consumers]
+ *  Dependencies: ResizingArrayDeque.java
+ *
+ *  Implements a bounded, blocking deque for handing items from producer
+ *  threads to consumer threads.
+ *
+ *  The items are kept in a ResizingArrayDeque guarded by one lock.
+ *  Threads that wait for an item and threads that wait for room wait on
+ *  two separate conditions, so a put only wakes a taker and a take only
+ *  wakes a putter. drainTo() moves many items under one acquisition of
+ *  the lock.
+ *
+ ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class BoundedBlockingDeque<Item> {
+    private final ResizingArrayDeque<Item> deque = new ResizingArrayDeque<Item>();
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();  // takers wait here
+    private final Condition notFull = lock.newCondition();   // putters wait here
+
+    /*
+     * Constructs an empty deque that holds at most capacity items.
+     */
+    public BoundedBlockingDeque(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /*
+     * Returns the number of items on the deque
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return deque.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /*
+     * Returns the number of items that can be added without blocking
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+   /***************************************************************************
+    *  Adding items
+    ***************************************************************************/
+
+    /*
+     * Adds the item at the front, or at the end, if there is room.
+     * Call with the lock held.
+     */
+    private boolean link(Item item, boolean first) {
+        if (deque.size() == capacity) return false;
+        if (first) deque.addFirst(item);
+        else       deque.addLast(item);
+        notEmpty.signal();
+        return true;
+    }
+
+    /*
+     * Adds the item, waiting up to nanos for room if timed,
+     * and as long as it takes otherwise.
+     */
+    private boolean offer(Item item, boolean first, boolean timed, long nanos)
+        throws InterruptedException {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        lock.lockInterruptibly();
+        try {
+            while (!link(item, first)) {
+                if (!timed) notFull.await();
+                else if (nanos <= 0) return false;
+                else nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Adds the item to the front if there is room, without waiting
+     */
+    public boolean offerFirst(Item item) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        lock.lock();
+        try {
+            return link(item, true);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Adds the item to the end if there is room, without waiting
+     */
+    public boolean offerLast(Item item) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        lock.lock();
+        try {
+            return link(item, false);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Adds the item to the front, waiting up to timeout for room
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean offerFirst(Item item, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        return offer(item, true, true, unit.toNanos(timeout));
+    }
+
+    /*
+     * Adds the item to the end, waiting up to timeout for room
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean offerLast(Item item, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        return offer(item, false, true, unit.toNanos(timeout));
+    }
+
+    /*
+     * Adds the item to the front, waiting as long as it takes for room
+     */
+    public void putFirst(Item item) throws InterruptedException {
+        offer(item, true, false, 0);
+    }
+
+    /*
+     * Adds the item to the end, waiting as long as it takes for room
+     */
+    public void putLast(Item item) throws InterruptedException {
+        offer(item, false, false, 0);
+    }
+
+   /***************************************************************************
+    *  Removing items
+    ***************************************************************************/
+
+    /*
+     * Removes the item at the front, or at the end, or returns null
+     * if there is none. Call with the lock held.
+     */
+    private Item unlink(boolean first) {
+        if (deque.isEmpty()) return null;
+        Item item = first ? deque.removeFirst() : deque.removeLast();
+        notFull.signal();
+        return item;
+    }
+
+    /*
+     * Removes an item, waiting up to nanos for one if timed,
+     * and as long as it takes otherwise.
+     */
+    private Item poll(boolean first, boolean timed, long nanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Item item;
+            while ((item = unlink(first)) == null) {
+                if (!timed) notEmpty.await();
+                else if (nanos <= 0) return null;
+                else nanos = notEmpty.awaitNanos(nanos);
+            }
+            return item;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Removes and returns the item at the front, or null if the deque
+     * is empty, without waiting
+     */
+    public Item pollFirst() {
+        lock.lock();
+        try {
+            return unlink(true);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Removes and returns the item at the end, or null if the deque
+     * is empty, without waiting
+     */
+    public Item pollLast() {
+        lock.lock();
+        try {
+            return unlink(false);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Removes and returns the item at the front, waiting up to timeout
+     * for one
+     *
+     * @return the item, or null if the timeout elapsed first
+     */
+    public Item pollFirst(long timeout, TimeUnit unit) throws InterruptedException {
+        return poll(true, true, unit.toNanos(timeout));
+    }
+
+    /*
+     * Removes and returns the item at the end, waiting up to timeout
+     * for one
+     *
+     * @return the item, or null if the timeout elapsed first
+     */
+    public Item pollLast(long timeout, TimeUnit unit) throws InterruptedException {
+        return poll(false, true, unit.toNanos(timeout));
+    }
+
+    /*
+     * Removes and returns the item at the front, waiting as long as
+     * it takes for one
+     */
+    public Item takeFirst() throws InterruptedException {
+        return poll(true, false, 0);
+    }
+
+    /*
+     * Removes and returns the item at the end, waiting as long as
+     * it takes for one
+     */
+    public Item takeLast() throws InterruptedException {
+        return poll(false, false, 0);
+    }
+
+    /*
+     * Moves up to max items from the front into c, in order, under one
+     * acquisition of the lock, without waiting.
+     *
+     * @return the number of items moved
+     */
+    public int drainTo(Collection<? super Item> c, int max) {
+        if (c == null) throw new IllegalArgumentException("Null collection");
+        if (max < 0) throw new IllegalArgumentException("Negative max");
+        lock.lock();
+        try {
+            int n = Math.min(max, deque.size());
+            for (int i = 0; i < n; i++) c.add(deque.removeFirst());
+            // room for n more items; wake at most n putters
+            for (int i = 0; i < n; i++) notFull.signal();
+            return n;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Unit test. Producers put distinct numbers, consumers take them
+     * with takeFirst() and drainTo(); checks that the sum comes out right.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final int producers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final int consumers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        final BoundedBlockingDeque<Integer> deque = new BoundedBlockingDeque<Integer>(1024);
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong count = new AtomicLong();
+
+        Thread[] threads = new Thread[producers + consumers];
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            threads[p] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = id; i < n; i += producers) deque.putLast(i);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads[producers + c] = new Thread(new Runnable() {
+                public void run() {
+                    ArrayList<Integer> batch = new ArrayList<Integer>();
+                    try {
+                        while (count.get() < n) {
+                            Integer item = deque.pollFirst(10, TimeUnit.MILLISECONDS);
+                            if (item == null) continue;
+                            batch.add(item);
+                            deque.drainTo(batch, 63);
+                            for (int x : batch) sum.addAndGet(x);
+                            count.addAndGet(batch.size());
+                            batch.clear();
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        long expected = (long) n * (n - 1) / 2;
+        if (sum.get() != expected || count.get() != n || !deque.isEmpty())
+            throw new AssertionError("Got " + count.get() + " items summing to " + sum.get());
+        System.out.println(n + " items handed over, sum " + sum.get());
+    }
+}
@@ -0,0 +1,391 @@
+/******************************************************************************
+ *  Compilation:  javac ConcurrentRandomizedQueue.java
+ *  Execution:    java ConcurrentRandomizedQueue [items] [threads]
+ *  Dependencies: none
+ *
+ *  Implements a randomized queue that many threads can use at once.
+ *
+ *  The items are split over a power-of-two number of stripes, each a
+ *  resizing array with its own lock. enqueue() adds to the stripe of the
+ *  calling thread; dequeue() and sample() pick a random non-empty stripe
+ *  and a random item in it. Threads only meet when they hit the same
+ *  stripe, and a thread that finds its stripe locked moves on to the
+ *  next free one instead of waiting.
+ *
+ *  An exact count of the items is kept apart from the stripes. enqueue()
+ *  adds to it after the item is in its stripe, and dequeue() claims one
+ *  of it before looking for an item, so a claimed item is always there
+ *  to be found, even while other threads move the items around the
+ *  stripes being scanned. dequeue() fails only when the count is zero.
+ *
+ *  How far from uniform: with S stripes, a dequeue starts at a random
+ *  stripe and takes from the first non-empty one it can lock. When all
+ *  stripes are non-empty and free, an item in a stripe holding n_j of
+ *  the N items is taken with probability 1/(S n_j) instead of 1/N, that
+ *  is, the mean stripe size N/S over n_j times the uniform one. Items in
+ *  small stripes are favoured; with equal stripes, or with all items in
+ *  one stripe (one enqueuing thread), the choice is exactly uniform. An
+ *  empty stripe, or one skipped because it is locked, hands its share
+ *  to the next stripe in the scan.
+ *
+ ******************************************************************************/
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentRandomizedQueue<Item> implements Iterable<Item> {
+    private static final int MAX_STRIPES = 1 << 16;
+
+    private final Stripe<Item>[] stripes;
+    private final int mask;
+    private final AtomicInteger count = new AtomicInteger();  // items enqueued and not claimed
+
+    /*
+     * One part of the queue: a resizing array of items and its lock.
+     * size is volatile so that other threads can skip an empty stripe
+     * without taking its lock; it is only written with the lock held.
+     */
+    private static final class Stripe<Item> {
+        private static final int MIN_CAPACITY = 8;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private Item[] items = newArray(MIN_CAPACITY);
+        private volatile int size;
+
+        @SuppressWarnings("unchecked")
+        private static <Item> Item[] newArray(int capacity) {
+            return (Item[]) new Object[capacity];
+        }
+
+        private void add(Item item) {
+            int n = size;
+            if (n == items.length) items = Arrays.copyOf(items, 2 * n);
+            items[n] = item;
+            size = n + 1;
+        }
+
+        /*
+         * Removes the item at index i, moving the last item into its place.
+         */
+        private Item remove(int i) {
+            int last = size - 1;
+            Item item = items[i];
+            items[i] = items[last];
+            items[last] = null;  // to avoid loitering
+            size = last;
+            if (items.length > MIN_CAPACITY && last == items.length / 4)
+                items = Arrays.copyOf(items, items.length / 2);
+            return item;
+        }
+    }
+
+    /*
+     * Constructs an empty queue with about two stripes per processor.
+     */
+    public ConcurrentRandomizedQueue() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * Constructs an empty queue with at least the given number of
+     * stripes, rounded up to a power of two.
+     */
+    public ConcurrentRandomizedQueue(int stripes) {
+        if (stripes <= 0 || stripes > MAX_STRIPES)
+            throw new IllegalArgumentException("Illegal number of stripes: " + stripes);
+        int n = Integer.highestOneBit(stripes);
+        if (n < stripes) n *= 2;
+        this.stripes = newStripes(n);
+        for (int i = 0; i < n; i++) this.stripes[i] = new Stripe<Item>();
+        mask = n - 1;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <Item> Stripe<Item>[] newStripes(int n) {
+        return (Stripe<Item>[]) new Stripe[n];
+    }
+
+    /*
+     * Returns the number of items, not counting those a dequeue() has
+     * claimed but not yet removed.
+     */
+    public int size() {
+        return count.get();
+    }
+
+    public boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    /*
+     * Returns the stripe a thread enqueues to. Thread ids are dense,
+     * so they are mixed before being reduced to a stripe.
+     */
+    private int home() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return h & mask;
+    }
+
+    public void enqueue(Item item) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        int home = home();
+        Stripe<Item> stripe = null;
+        // the first free stripe from home on; wait for home if none is free
+        for (int i = 0; i <= mask; i++) {
+            Stripe<Item> s = stripes[(home + i) & mask];
+            if (s.lock.tryLock()) {
+                stripe = s;
+                break;
+            }
+        }
+        if (stripe == null) {
+            stripe = stripes[home];
+            stripe.lock.lock();
+        }
+        try {
+            stripe.add(item);
+        }
+        finally {
+            stripe.lock.unlock();
+        }
+        count.incrementAndGet();
+    }
+
+    /*
+     * Claims one item for removal, or returns false if there is none.
+     */
+    private boolean claim() {
+        while (true) {
+            int n = count.get();
+            if (n == 0) return false;
+            if (count.compareAndSet(n, n - 1)) return true;
+        }
+    }
+
+    /*
+     * Returns a random item, removing it if remove is set, or null if
+     * every stripe was seen empty. Items can move between the stripes
+     * while they are scanned, so null does not mean the queue is empty. Scans the stripes from a random one,
+     * first taking only locks that are free, then waiting for them.
+     */
+    private Item take(boolean remove) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int start = random.nextInt(stripes.length);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i <= mask; i++) {
+                Stripe<Item> stripe = stripes[(start + i) & mask];
+                if (stripe.size == 0) continue;
+                if (pass == 0) {
+                    if (!stripe.lock.tryLock()) continue;
+                }
+                else stripe.lock.lock();
+                try {
+                    int n = stripe.size;
+                    if (n == 0) continue;
+                    int index = random.nextInt(n);
+                    return remove ? stripe.remove(index) : stripe.items[index];
+                }
+                finally {
+                    stripe.lock.unlock();
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Removes and returns a random item, or null if the queue is empty
+     */
+    public Item poll() {
+        if (!claim()) return null;
+        // the claimed item is in some stripe; scan until it is found
+        while (true) {
+            Item item = take(true);
+            if (item != null) return item;
+            Thread.yield();
+        }
+    }
+
+    public Item dequeue() {
+        Item item = poll();
+        if (item == null) throw new NoSuchElementException("Queue underflow");
+        return item;
+    }
+
+    /*
+     * Returns a random item (but do not remove it)
+     */
+    public Item sample() {
+        while (true) {
+            if (count.get() == 0) throw new NoSuchElementException("Queue underflow");
+            Item item = take(false);
+            if (item != null) return item;
+            Thread.yield();
+        }
+    }
+
+    /*
+     * Returns an iterator over a copy of the items, in uniformly random
+     * order. The copy is taken one stripe at a time, so it reflects
+     * each stripe at some moment but not the whole queue at one moment.
+     */
+    public Iterator<Item> iterator() {
+        Object[] copy = new Object[0];
+        int n = 0;
+        for (Stripe<Item> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                int k = stripe.size;
+                if (n + k > copy.length) copy = Arrays.copyOf(copy, Math.max(n + k, 2 * copy.length));
+                System.arraycopy(stripe.items, 0, copy, n, k);
+                n += k;
+            }
+            finally {
+                stripe.lock.unlock();
+            }
+        }
+        return new ShuffledIterator(copy, n);
+    }
+
+    /*
+     * Shuffles the copy lazily: each call to next() swaps a random one
+     * of the items not yet returned into place (Fisher-Yates).
+     */
+    private class ShuffledIterator implements Iterator<Item> {
+        private final Object[] items;
+        private final int n;
+        private int i = 0;
+
+        public ShuffledIterator(Object[] items, int n) {
+            this.items = items;
+            this.n = n;
+        }
+
+        public boolean hasNext() {
+            return i < n;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @SuppressWarnings("unchecked")
+        public Item next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int j = i + ThreadLocalRandom.current().nextInt(n - i);
+            Object item = items[j];
+            items[j] = items[i];
+            items[i++] = item;
+            return (Item) item;
+        }
+    }
+
+    /*
+     * Unit test. Threads enqueue distinct numbers and dequeue about as
+     * many; checks that every number comes out exactly once. Then has
+     * every thread enqueue before it dequeues, so that dequeue() never
+     * finds the queue empty. Then counts which of a few items one thread
+     * dequeues first.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        final ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<Integer>();
+        final AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        final AtomicLong dequeued = new AtomicLong();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = id; i < n; i += threadCount) {
+                        queue.enqueue(i);
+                        if (i % 2 == 0) {
+                            Integer item = queue.poll();
+                            if (item != null) {
+                                taken.incrementAndGet(item);
+                                dequeued.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        int left = queue.size();
+        for (int x : queue) taken.incrementAndGet(x);
+        while (!queue.isEmpty()) queue.dequeue();
+        for (int i = 0; i < n; i++) {
+            if (taken.get(i) != 1)
+                throw new AssertionError("Item " + i + " taken " + taken.get(i) + " times");
+        }
+        System.out.println(n + " items: " + dequeued.get() + " dequeued by "
+                           + threadCount + " threads, " + left + " left");
+
+        // enqueue, then dequeue: the queue holds an item for every dequeue()
+        final int rounds = 20;
+        final int perThread = Math.max(1, n / (rounds * threadCount));
+        final AtomicLong in = new AtomicLong();
+        final AtomicLong out = new AtomicLong();
+        final AtomicInteger underflows = new AtomicInteger();
+        for (int round = 0; round < rounds; round++) {
+            final ConcurrentRandomizedQueue<Integer> shared = new ConcurrentRandomizedQueue<Integer>();
+            final CountDownLatch start = new CountDownLatch(1);
+            for (int t = 0; t < threadCount; t++) {
+                final int id = t;
+                threads[t] = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            start.await();
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        for (int i = 0; i < perThread; i++) {
+                            int item = id * perThread + i;
+                            shared.enqueue(item);
+                            in.addAndGet(item);
+                            try {
+                                out.addAndGet(shared.dequeue());
+                            }
+                            catch (NoSuchElementException e) {
+                                underflows.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+            }
+            for (Thread thread : threads) thread.start();
+            start.countDown();
+            for (Thread thread : threads) thread.join();
+            if (!shared.isEmpty())
+                throw new AssertionError(shared.size() + " items left after round " + round);
+        }
+        if (underflows.get() != 0)
+            throw new AssertionError(underflows.get() + " false underflows");
+        if (in.get() != out.get())
+            throw new AssertionError("Enqueued sum " + in.get() + ", dequeued sum " + out.get());
+        System.out.println(rounds + " rounds of " + threadCount + " threads: "
+                           + rounds * threadCount * perThread + " enqueue/dequeue pairs");
+
+        int[] first = new int[5];
+        for (int trial = 0; trial < 100000; trial++) {
+            ConcurrentRandomizedQueue<Integer> q = new ConcurrentRandomizedQueue<Integer>(4);
+            for (int i = 0; i < first.length; i++) q.enqueue(i);
+            first[q.dequeue()]++;
+        }
+        System.out.println("first dequeued: " + Arrays.toString(first));
+    }
+}
@@ -0,0 +1,152 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 LongDeque.java
+ *  Execution:    java-algs4 LongDeque < input.txt
+ *  Dependencies: StdIn.java
+ *
+ *  Implements deque of long values.
+ *  Same circular array as ResizingArrayDeque, over a long[], so no value
+ *  is ever boxed. Iteration goes through an LongConsumer instead of an
+ *  Iterator, which allocates nothing.
+ *
+ ******************************************************************************/
+
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+import edu.princeton.cs.algs4.StdIn;
+
+public class LongDeque {
+    private static final int MIN_CAPACITY = 8;
+    
+    private long[] a;     // values, a.length is a power of two
+    private int head;    // index of the first value
+    private int size;    // number of values
+    
+    /*
+     * Constructs an empty deque.
+     */
+    public LongDeque() {
+        a = new long[MIN_CAPACITY];
+        head = 0;
+        size = 0;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /*
+     * Returns the number of values on the deque
+     */
+    public int size() {
+        return size;
+    }
+    
+    /*
+     * Moves the values to a new array of the given capacity,
+     * the first value at index 0.
+     */
+    private void resize(int capacity) {
+        assert capacity >= size && Integer.bitCount(capacity) == 1;
+        long[] temp = new long[capacity];
+        int first = Math.min(size, a.length - head);
+        System.arraycopy(a, head, temp, 0, first);
+        System.arraycopy(a, 0, temp, first, size - first);
+        a = temp;
+        head = 0;
+    }
+    
+    /*
+     * Halves the array when it is only a quarter full.
+     */
+    private void shrink() {
+        if (a.length > MIN_CAPACITY && size == a.length / 4) resize(a.length / 2);
+    }
+    
+    /*
+     * Adds the value to the front
+     */
+    public void addFirst(long value) {
+        if (size == a.length) resize(2 * a.length);
+        head = (head - 1) & (a.length - 1);
+        a[head] = value;
+        size++;
+    }
+    
+    /*
+     * Adds the value to the end
+     */
+    public void addLast(long value) {
+        if (size == a.length) resize(2 * a.length);
+        a[(head + size) & (a.length - 1)] = value;
+        size++;
+    }
+    
+    /*
+     * Removes and returns the value from the front
+     */
+    public long removeFirst() {
+        if (isEmpty()) throw new NoSuchElementException("Deque underflow");
+        long value = a[head];
+        head = (head + 1) & (a.length - 1);
+        size--;
+        shrink();
+        return value;
+    }
+    
+    /*
+     * Removes and returns the value from the end
+     */
+    public long removeLast() {
+        if (isEmpty()) throw new NoSuchElementException("Deque underflow");
+        long value = a[(head + size - 1) & (a.length - 1)];
+        size--;
+        shrink();
+        return value;
+    }
+    
+    /*
+     * Returns the value at the front without removing it
+     */
+    public long peekFirst() {
+        if (isEmpty()) throw new NoSuchElementException("Deque underflow");
+        return a[head];
+    }
+    
+    /*
+     * Returns the value at the end without removing it
+     */
+    public long peekLast() {
+        if (isEmpty()) throw new NoSuchElementException("Deque underflow");
+        return a[(head + size - 1) & (a.length - 1)];
+    }
+    
+    /*
+     * Passes the values to action in order from front to end
+     */
+    public void forEach(LongConsumer action) {
+        if (action == null) throw new IllegalArgumentException("Null action");
+        int mask = a.length - 1;
+        for (int i = 0; i < size; i++) {
+            action.accept(a[(head + i) & mask]);
+        }
+    }
+    
+    /*
+     * Unit test. Reads values from standard input and adds them to
+     * the end; "-" removes the value at the front.
+     */
+    public static void main(String[] args) {
+        LongDeque deque = new LongDeque();
+        while (!StdIn.isEmpty()) {
+            String item = StdIn.readString();
+            if (!item.equals("-")) deque.addLast(Long.parseLong(item));
+            else if (!deque.isEmpty()) System.out.println("Removed: " + deque.removeFirst());
+        }
+        System.out.println("Deque size: " + deque.size());
+        deque.forEach(new LongConsumer() {
+            public void accept(long value) {
+                System.out.println(value);
+            }
+        });
+    }
+}
@@ -1,42 +1,101 @@
 /******************************************************************************
  *  Compilation:  javac-algs4 Permutation.java
- *  Execution:    java-algs4 Permutation
- *  Dependencies: StdIn.java StdRandom.java
+ *  Execution:    java-algs4 Permutation k [-lines] [-weighted] < input.txt
+ *  Dependencies: StdRandom.java RandomSource.java RandomizedQueue.java
+ *                ReservoirSampler.java WeightedReservoirSampler.java
+ *                RecordScanner.java
  *
- *  Implements Randomized Queue.
+ *  Prints k of the strings of standard input, chosen uniformly at random,
+ *  in random order. The strings are whitespace-separated tokens, or
+ *  whole lines with -lines.
+ *
+ *  With -weighted, every item is preceded by a positive weight, and
+ *  the sample is drawn without replacement with probability proportional
+ *  to weight: "weight item" token pairs, or lines "weight rest of line".
+ *
+ *  The input is read in one pass, keeping only k strings in memory.
+ *  Strings the reservoir will not keep are skipped at the byte level,
+ *  so most of the input is never turned into Strings.
  *
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdRandom;
 
 public class Permutation {
-    public static void main(String[] args) {
-        int size = 0;
-        int n = Integer.parseInt(args[0]);
-        RandomizedQueue<String> ranque = new RandomizedQueue<String>();
-        
-        if (n == 0) return;
-        while (!StdIn.isEmpty()) {
-            String item = StdIn.readString();
-            
-            // The queue is full
-            if (size >= n) {
-                // true for replace, false for pass
-                if (StdRandom.bernoulli()) {
-                    ranque.dequeue(); // randomly dequeue a node
-                    ranque.enqueue(item); // add the lucky node
-                }
+    /*
+     * Samples k records with ReservoirSampler, skipping at the byte
+     * level the records it will not keep.
+     */
+    private static Iterable<String> sample(int k, RecordScanner scanner, RandomSource random) {
+        ReservoirSampler<String> sampler = new ReservoirSampler<String>(k, random);
+        while (true) {
+            // pass over the strings the sampler would not keep
+            long m = sampler.skippable();
+            if (m > 0) {
+                long skipped = scanner.skip(m);
+                sampler.skip(skipped);
+                if (skipped < m) break;
+            }
+            String item = scanner.next();
+            if (item == null) break;
+            sampler.offer(item);
+        }
+        return sampler;
+    }
+    
+    /*
+     * Samples k weighted records with WeightedReservoirSampler.
+     * With tokens, each item is the token after its weight, and is
+     * skipped unread when the sampler does not want it. With lines,
+     * each line is a weight, whitespace, then the item.
+     */
+    private static Iterable<String> sampleWeighted(int k, RecordScanner scanner, boolean lines,
+                                                   RandomSource random) {
+        WeightedReservoirSampler<String> sampler = new WeightedReservoirSampler<String>(k, random);
+        for (String record = scanner.next(); record != null; record = scanner.next()) {
+            if (lines) {
+                String line = record.trim();
+                if (line.isEmpty()) continue;
+                int split = 0;
+                while (split < line.length() && !Character.isWhitespace(line.charAt(split))) split++;
+                double weight = Double.parseDouble(line.substring(0, split));
+                sampler.offer(line.substring(split).trim(), weight);
             }
-            // when the size is less than specified n
             else {
-                ranque.enqueue(item);
-                size++;
+                double weight = Double.parseDouble(record);
+                if (!sampler.accept(weight)) {
+                    if (scanner.skip(1) == 0) throw new IllegalArgumentException("Weight without item");
+                    continue;
+                }
+                String item = scanner.next();
+                if (item == null) throw new IllegalArgumentException("Weight without item");
+                sampler.keep(item);
             }
         }
-        for (int i = 0; i < n; i++) {
+        return sampler;
+    }
+    
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        boolean lines = false, weighted = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-lines")) lines = true;
+            else if (args[i].equals("-weighted")) weighted = true;
+            else throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+        if (n == 0) return;
+        
+        RandomSource random = RandomSource.splittable(StdRandom.uniform(Integer.MAX_VALUE));
+        RecordScanner scanner = lines ? RecordScanner.lines(System.in)
+                                      : RecordScanner.tokens(System.in);
+        Iterable<String> sample = weighted ? sampleWeighted(n, scanner, lines, random)
+                                           : sample(n, scanner, random);
+        
+        // The sample is in no particular order; shuffle it on the way out
+        RandomizedQueue<String> ranque = new RandomizedQueue<String>(random);
+        for (String item : sample) ranque.enqueue(item);
+        while (!ranque.isEmpty()) {
             System.out.println(ranque.dequeue());
         }
-        // System.out.println("Ranque size: " + size);
     }
-}
\ No newline at end of file
+}
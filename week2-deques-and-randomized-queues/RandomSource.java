@@ -0,0 +1,212 @@
+/******************************************************************************
+ *  Compilation:  javac RandomSource.java
+ *  Execution:    java RandomSource [seed]
+ *  Dependencies: none
+ *
+ *  A stream of pseudo-random numbers that can be passed to the classes
+ *  that need randomness, instead of the shared static StdRandom.
+ *
+ *  Every source is seeded on its own, so an experiment can be repeated,
+ *  and split() hands out an independent stream for another thread, so
+ *  parallel experiments do not share (or contend for) one generator.
+ *  A source is not thread-safe; give each thread its own.
+ *
+ *  Two generators are provided:
+ *    - RandomSource.splittable(seed), java.util.SplittableRandom
+ *    - RandomSource.xoshiro(seed), xoshiro256++ by Blackman and Vigna
+ *
+ ******************************************************************************/
+
+import java.util.SplittableRandom;
+
+public interface RandomSource {
+
+    /**
+     * Returns 64 uniformly random bits.
+     */
+    long nextLong();
+
+    /**
+     * Returns a new source whose stream does not overlap with this one,
+     * and advances this one past it. The result depends only on the
+     * state of this source, so splitting is reproducible.
+     */
+    RandomSource split();
+
+    /**
+     * Returns 32 uniformly random bits.
+     */
+    default int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Returns a uniformly random int in [0, n).
+     * Uses Lemire's multiply-and-shift method ("Fast Random Integer
+     * Generation in an Interval", 2019): the high half of a random 32-bit
+     * value times n, redrawn only in the rare case the low half shows
+     * the result would be biased. There is no division in the common case.
+     *
+     * @throw IllegalArgumentException if n is not positive
+     */
+    default int uniform(int n) {
+        if (n <= 0) throw new IllegalArgumentException("Bound must be positive: " + n);
+        long m = (nextInt() & 0xFFFFFFFFL) * n;
+        long low = m & 0xFFFFFFFFL;
+        if (low < n) {
+            long threshold = (0x100000000L - n) % n;   // 2^32 mod n
+            while (low < threshold) {
+                m = (nextInt() & 0xFFFFFFFFL) * n;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * Returns a uniformly random int in [lo, hi).
+     *
+     * @throw IllegalArgumentException if the range is empty or too large
+     */
+    default int uniform(int lo, int hi) {
+        if (lo >= hi || (long) hi - lo > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Illegal range [" + lo + ", " + hi + ")");
+        return lo + uniform(hi - lo);
+    }
+
+    /**
+     * Returns a uniformly random double in [0, 1).
+     */
+    default double uniform() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns a source backed by java.util.SplittableRandom.
+     */
+    static RandomSource splittable(long seed) {
+        return new Splittable(new SplittableRandom(seed));
+    }
+
+    /**
+     * Returns a xoshiro256++ source.
+     */
+    static RandomSource xoshiro(long seed) {
+        return new Xoshiro256PlusPlus(seed);
+    }
+
+    /**
+     * A source backed by java.util.SplittableRandom.
+     */
+    final class Splittable implements RandomSource {
+        private final SplittableRandom random;
+
+        private Splittable(SplittableRandom random) {
+            this.random = random;
+        }
+
+        public long nextLong() {
+            return random.nextLong();
+        }
+
+        public RandomSource split() {
+            return new Splittable(random.split());
+        }
+    }
+
+    /**
+     * xoshiro256++ (Blackman and Vigna, "Scrambled Linear Pseudorandom
+     * Number Generators", 2021): 256 bits of state, period 2^256 - 1.
+     * split() returns a copy of this generator and jumps this one
+     * 2^128 steps ahead, so the streams cannot overlap.
+     */
+    final class Xoshiro256PlusPlus implements RandomSource {
+        private static final long[] JUMP = {
+            0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL,
+            0xa9582618e03fc9aaL, 0x39abdc4529b1661cL
+        };
+        private long s0, s1, s2, s3;
+
+        /**
+         * Seeds the 256 bits of state from one long with SplitMix64,
+         * as the authors recommend, which never yields the all-zero state.
+         */
+        private Xoshiro256PlusPlus(long seed) {
+            long x = seed;
+            s0 = mix(x += 0x9E3779B97F4A7C15L);
+            s1 = mix(x += 0x9E3779B97F4A7C15L);
+            s2 = mix(x += 0x9E3779B97F4A7C15L);
+            s3 = mix(x +  0x9E3779B97F4A7C15L);
+        }
+
+        private Xoshiro256PlusPlus(long s0, long s1, long s2, long s3) {
+            this.s0 = s0;
+            this.s1 = s1;
+            this.s2 = s2;
+            this.s3 = s3;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        public long nextLong() {
+            long result = Long.rotateLeft(s0 + s3, 23) + s0;
+            long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+            return result;
+        }
+
+        public RandomSource split() {
+            RandomSource copy = new Xoshiro256PlusPlus(s0, s1, s2, s3);
+            jump();
+            return copy;
+        }
+
+        /**
+         * Advances the state by 2^128 steps.
+         */
+        private void jump() {
+            long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+            for (long jump : JUMP) {
+                for (int b = 0; b < 64; b++) {
+                    if ((jump & (1L << b)) != 0) {
+                        t0 ^= s0;
+                        t1 ^= s1;
+                        t2 ^= s2;
+                        t3 ^= s3;
+                    }
+                    nextLong();
+                }
+            }
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+        }
+    }
+
+    /**
+     * Unit test. Prints a few draws of each generator, and the
+     * frequencies of uniform(3) over many draws.
+     */
+    static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 42;
+        RandomSource[] sources = { splittable(seed), xoshiro(seed) };
+        for (RandomSource random : sources) {
+            System.out.println(random.getClass().getSimpleName() + ": "
+                               + random.uniform(100) + " " + random.uniform(1, 7) + " "
+                               + random.uniform());
+            int[] counts = new int[3];
+            for (int i = 0; i < 300000; i++) counts[random.uniform(3)]++;
+            System.out.println("  uniform(3): " + counts[0] + " " + counts[1] + " " + counts[2]);
+        }
+    }
+}
@@ -1,12 +1,15 @@
 /******************************************************************************
  *  Compilation:  javac-algs4 RandomizedQueue.java
  *  Execution:    java-algs4 RandomizedQueue
- *  Dependencies: Iterator.java StdIn.java StdRandom.java
+ *  Dependencies: Iterator.java StdIn.java StdRandom.java RandomSource.java
  *
  *  Implements Randomized Queue.
+ *  All random choices come from a RandomSource given to the constructor,
+ *  so a queue can be seeded on its own.
  *
  ******************************************************************************/
 
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import edu.princeton.cs.algs4.StdIn;
@@ -15,14 +18,24 @@ import edu.princeton.cs.algs4.StdRandom;
 public class RandomizedQueue<Item> implements Iterable<Item> {
     private Item[] a; // array of items
     private int size; // size of the array
-    // private int nullSize;
+    private int modCount; // number of enqueues and dequeues, for iterators
+    private final RandomSource random;
     
-    // Initializes an empty queue
+    // sampleDistinct() uses Floyd's algorithm when k * FLOYD_RATIO <= size
+    private static final int FLOYD_RATIO = 8;
+    
+    // Initializes an empty queue, seeded from StdRandom
     public RandomizedQueue() {
+        this(RandomSource.splittable(StdRandom.uniform(Integer.MAX_VALUE)));
+    }
+    
+    // Initializes an empty queue drawing from the given source
+    public RandomizedQueue(RandomSource random) {
+        if (random == null) throw new IllegalArgumentException("Null random source");
         int initialCapacity = 1;
         a = (Item[]) new Object[initialCapacity];
         size = 0;
-        // nullSize = initialCapacity;
+        this.random = random;
     }
     
     public boolean isEmpty() {
@@ -58,6 +71,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         
         // if not, just enqueue the item
         a[size++] = item;
+        modCount++;
     }
     
     public Item dequeue() {
@@ -68,7 +82,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         
         // Randomly choose an index to remove without setting
         // the removed spot null.
-        removeIndex = StdRandom.uniform(size); // returns an index within the bound
+        removeIndex = random.uniform(size); // returns an index within the bound
         item = a[removeIndex]; // for returning
         
         // Swap the last item to the empty spot
@@ -78,6 +92,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         
         // Decrement the size count
         size--;
+        modCount++;
         
         // If ncessary, that is, the size is less than a quarter
         // of the array, shrink it by half
@@ -97,40 +112,165 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (isEmpty()) throw new NoSuchElementException("Queue underflow");
         
         // Samples the index
-        sampleIndex = StdRandom.uniform(size);
+        sampleIndex = random.uniform(size);
         
         return a[sampleIndex];
     }
     
     /*
-     * Returns an independent iterator over items in random order
+     * Checks the arguments of the bulk operations.
+     */
+    private void validateBulk(int k, Item[] out) {
+        if (out == null) throw new IllegalArgumentException("Null array");
+        if (k < 0 || k > out.length)
+            throw new IllegalArgumentException("Illegal k " + k + " for an array of " + out.length);
+    }
+    
+    /*
+     * Fills out[0..k) with random items, with replacement
+     * (an item may be drawn more than once).
+     */
+    public void sample(int k, Item[] out) {
+        validateBulk(k, out);
+        if (k > 0 && isEmpty()) throw new NoSuchElementException("Queue underflow");
+        for (int i = 0; i < k; i++) out[i] = a[random.uniform(size)];
+    }
+    
+    /*
+     * Fills out[0..k) with k distinct random items, without removing them.
+     * When k is small next to size, uses Floyd's algorithm, which draws
+     * k indices and remembers them in a small hash set, and leaves the
+     * queue as it is; the items then come in no particular order.
+     * Otherwise runs k steps of Fisher-Yates on the backing array, which
+     * reorders the items, so iterators in use fail afterwards.
+     */
+    public void sampleDistinct(int k, Item[] out) {
+        validateBulk(k, out);
+        if (k > size) throw new NoSuchElementException("Queue underflow");
+        if ((long) k * FLOYD_RATIO <= size) {
+            IndexSet chosen = new IndexSet(k);
+            int m = 0;
+            for (int j = size - k; j < size; j++) {
+                int t = random.uniform(j + 1);
+                if (!chosen.add(t)) {
+                    // t was drawn before, j never was
+                    chosen.add(j);
+                    t = j;
+                }
+                out[m++] = a[t];
+            }
+            return;
+        }
+        for (int i = 0; i < k; i++) {
+            int j = i + random.uniform(size - i);
+            Item item = a[j];
+            a[j] = a[i];
+            a[i] = item;
+            out[i] = item;
+        }
+        modCount++;
+    }
+    
+    /*
+     * Removes k random items and puts them in out[0..k).
+     */
+    public void dequeue(int k, Item[] out) {
+        validateBulk(k, out);
+        if (k > size) throw new NoSuchElementException("Queue underflow");
+        for (int i = 0; i < k; i++) {
+            int j = random.uniform(size);
+            out[i] = a[j];
+            a[j] = a[size-1];
+            a[size-1] = null; // to avoid loitering
+            size--;
+        }
+        modCount++;
+        
+        // Shrink once, to the capacity dequeue() would have ended with
+        int capacity = a.length;
+        while (size > 0 && size <= capacity/4) capacity /= 2;
+        if (capacity < a.length) resize(capacity);
+    }
+    
+    /*
+     * A set of array indices for Floyd's algorithm: open addressing
+     * with linear probing in a power-of-two table at most half full.
+     * Stores index + 1, so that 0 marks an empty slot.
+     */
+    private static class IndexSet {
+        private final int[] table;
+        private final int mask;
+        
+        IndexSet(int k) {
+            int capacity = Integer.highestOneBit(Math.max(2 * k, 2) - 1) << 1;
+            table = new int[capacity];
+            mask = capacity - 1;
+        }
+        
+        /*
+         * Adds index, and returns false if it was already there.
+         */
+        boolean add(int index) {
+            int h = index * 0x9E3779B9;
+            for (int i = (h ^ (h >>> 16)) & mask; ; i = (i + 1) & mask) {
+                if (table[i] == 0) {
+                    table[i] = index + 1;
+                    return true;
+                }
+                if (table[i] == index + 1) return false;
+            }
+        }
+    }
+    
+    /*
+     * Returns an independent iterator over items in uniformly random
+     * order. Creating one takes constant time and memory; the first
+     * next() allocates one int per item. The iterator fails
+     * with ConcurrentModificationException if the queue is enqueued to
+     * or dequeued from while it is in use.
      */
     public Iterator<Item> iterator() {
         return new RandomizedQueueIterator();
     }
     
-    // An iterator for the above method
+    /*
+     * Walks the array in a uniformly random order without copying it:
+     * an incremental Fisher-Yates shuffle of the indices [0, size), one
+     * swap per next(). The shuffle is kept in an int[] that starts as
+     * the identity, stored as index + 1 so that the zeroes of a new
+     * array stand for untouched positions, and is only allocated by the
+     * first next(). Every size! order is equally likely, given a
+     * uniform RandomSource.
+     */
     private class RandomizedQueueIterator implements Iterator<Item> {
-        // private int i = 0;
-        private RandomizedQueue<Item> queueCopy = new RandomizedQueue<Item>();
-        
-        public RandomizedQueueIterator() {
-            for (int k = 0; k < size; k++) queueCopy.enqueue(a[k]);
-        }
+        private final int expectedModCount = modCount;
+        private final int n = size;
+        private int[] order;    // order[k] - 1 is at position k, or k if 0
+        private int i = 0;
         
         public boolean hasNext() {
-            // return i < size; // all the way till null
-            return !queueCopy.isEmpty();
+            return i < n;
         }
         
         public void remove() {
             throw new UnsupportedOperationException();
         }
         
+        private int at(int k) {
+            return order[k] == 0 ? k : order[k] - 1;
+        }
+        
         public Item next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
             if (!hasNext()) throw new NoSuchElementException();
-            // return a[i++];
-            return queueCopy.dequeue();
+            if (order == null) order = new int[n];
+            
+            // swap a random position of [i, n) into position i
+            int j = i + random.uniform(n - i);
+            int index = at(j);
+            order[j] = at(i) + 1;
+            i++;
+            return a[index];
         }
     }
     
@@ -0,0 +1,167 @@
+/******************************************************************************
+ *  Compilation:  javac RecordScanner.java
+ *  Execution:    java RecordScanner [-lines] < input.txt
+ *  Dependencies: none
+ *
+ *  Reads records, lines or whitespace-separated tokens, from a byte
+ *  stream through one reusable buffer.
+ *
+ *  Records are found by scanning bytes; a String is only built for a
+ *  record returned by next(), so skip() passes over records without
+ *  decoding or allocating anything. Bytes are decoded as UTF-8.
+ *  Only the ASCII whitespace characters separate tokens.
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class RecordScanner {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final boolean lines;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos, limit;
+    private boolean eof;
+    private byte[] record = new byte[128];  // bytes of the record being read
+    private int length;
+
+    private RecordScanner(InputStream in, boolean lines) {
+        if (in == null) throw new IllegalArgumentException("Null input stream");
+        this.in = in;
+        this.lines = lines;
+    }
+
+    /*
+     * Returns a scanner of the lines of in. A line ends with '\n'
+     * ("\r\n" also works); the last line need not.
+     */
+    public static RecordScanner lines(InputStream in) {
+        return new RecordScanner(in, true);
+    }
+
+    /*
+     * Returns a scanner of the whitespace-separated tokens of in.
+     */
+    public static RecordScanner tokens(InputStream in) {
+        return new RecordScanner(in, false);
+    }
+
+    /*
+     * Refills the buffer, and returns false at the end of the input.
+     */
+    private boolean fill() {
+        if (eof) return false;
+        try {
+            int n;
+            do {
+                n = in.read(buffer, 0, BUFFER_SIZE);
+            } while (n == 0);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /*
+     * Appends buffer[from, to) to the record.
+     */
+    private void keep(int from, int to) {
+        int n = to - from;
+        if (length + n > record.length)
+            record = Arrays.copyOf(record, Math.max(length + n, 2 * record.length));
+        System.arraycopy(buffer, from, record, length, n);
+        length += n;
+    }
+
+    /*
+     * Moves past the next record, copying its bytes if copy is set.
+     * Returns false if there is no record left.
+     */
+    private boolean scan(boolean copy) {
+        length = 0;
+        if (lines) {
+            boolean any = false;
+            while (pos < limit || fill()) {
+                any = true;
+                int i = pos;
+                while (i < limit && buffer[i] != '\n') i++;
+                if (copy) keep(pos, i);
+                if (i < limit) {
+                    pos = i + 1;
+                    if (copy && length > 0 && record[length - 1] == '\r') length--;
+                    return true;
+                }
+                pos = limit;
+            }
+            if (copy && length > 0 && record[length - 1] == '\r') length--;
+            return any;
+        }
+
+        // skip whitespace before the token
+        while (true) {
+            if (pos == limit && !fill()) return false;
+            while (pos < limit && isWhitespace(buffer[pos])) pos++;
+            if (pos < limit) break;
+        }
+        while (pos < limit || fill()) {
+            int i = pos;
+            while (i < limit && !isWhitespace(buffer[i])) i++;
+            if (copy) keep(pos, i);
+            pos = i;
+            if (i < limit) break;
+        }
+        return true;
+    }
+
+    /*
+     * Returns the next record, or null at the end of the input.
+     */
+    public String next() {
+        if (!scan(true)) return null;
+        return new String(record, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Passes over the next m records without building them, and
+     * returns how many there were, less than m only at the end.
+     */
+    public long skip(long m) {
+        if (m < 0) throw new IllegalArgumentException("Negative count: " + m);
+        long skipped = 0;
+        while (skipped < m && scan(false)) skipped++;
+        return skipped;
+    }
+
+    /*
+     * Unit test. Counts the records of standard input and prints
+     * the first and the last one.
+     */
+    public static void main(String[] args) {
+        boolean lines = args.length > 0 && args[0].equals("-lines");
+        RecordScanner scanner = lines ? lines(System.in) : tokens(System.in);
+        String first = scanner.next(), last = first;
+        long count = first == null ? 0 : 1;
+        for (String s = scanner.next(); s != null; s = scanner.next()) {
+            last = s;
+            count++;
+        }
+        System.out.println(count + (lines ? " lines" : " tokens")
+                           + ", first [" + first + "], last [" + last + "]");
+    }
+}
@@ -0,0 +1,183 @@
+/******************************************************************************
+ *  Compilation:  javac ReservoirSampler.java
+ *  Execution:    java ReservoirSampler [n] [k]
+ *  Dependencies: RandomSource.java
+ *
+ *  Keeps a uniform random sample of k items from a stream of unknown
+ *  length, in memory for k items.
+ *
+ *  Two algorithms are provided:
+ *    - Algorithm R (Vitter, "Random Sampling with a Reservoir", 1985)
+ *      draws one random number per item of the stream.
+ *    - Algorithm L (Li, "Reservoir-Sampling Algorithms of Time Complexity
+ *      O(n(1 + log(N/n)))", 1994) draws the number of items to pass over
+ *      before the next one kept, from a geometric distribution, so it
+ *      draws O(k log(N/k)) random numbers for a stream of N items.
+ *
+ *  With Algorithm L, skippable() tells how many of the coming items will
+ *  be passed over. A reader can skip them without building them, and
+ *  report them with skip().
+ *
+ ******************************************************************************/
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class ReservoirSampler<Item> implements Iterable<Item> {
+    public enum Algorithm { R, L }
+
+    private final Item[] reservoir;
+    private final int k;
+    private final Algorithm algorithm;
+    private final RandomSource random;
+    private long count;   // items seen so far, offered or skipped
+    private long next;    // Algorithm L: the count of the next item kept
+    private double w;     // Algorithm L: largest of k uniform keys so far
+
+    /*
+     * Constructs a sampler of k items using Algorithm L.
+     */
+    public ReservoirSampler(int k, RandomSource random) {
+        this(k, random, Algorithm.L);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ReservoirSampler(int k, RandomSource random, Algorithm algorithm) {
+        if (k <= 0) throw new IllegalArgumentException("Sample size must be positive: " + k);
+        if (random == null) throw new IllegalArgumentException("Null random source");
+        if (algorithm == null) throw new IllegalArgumentException("Null algorithm");
+        this.k = k;
+        this.random = random;
+        this.algorithm = algorithm;
+        reservoir = (Item[]) new Object[k];
+    }
+
+    /*
+     * Returns the number of items of the stream so far
+     */
+    public long count() {
+        return count;
+    }
+
+    /*
+     * Returns the number of items in the sample, min(k, count())
+     */
+    public int size() {
+        return (int) Math.min(k, count);
+    }
+
+    /*
+     * Returns a uniform double in (0, 1], whose logarithm is finite.
+     */
+    private double positiveUniform() {
+        return 1.0 - random.uniform();
+    }
+
+    /*
+     * Returns a uniformly random long in [0, n).
+     */
+    private long uniform(long n) {
+        if (n <= Integer.MAX_VALUE) return random.uniform((int) n);
+        long bits, value;
+        do {
+            bits = random.nextLong() >>> 1;
+            value = bits % n;
+        } while (bits - value + (n - 1) < 0);  // the last, partial block
+        return value;
+    }
+
+    /*
+     * Algorithm L: draws the count of the next item to keep. The number
+     * of items passed over is geometric with success probability w.
+     */
+    private void advance() {
+        double gap = Math.floor(Math.log(positiveUniform()) / Math.log1p(-w));
+        if (!(gap < Long.MAX_VALUE - next - 1)) next = Long.MAX_VALUE;  // also NaN
+        else next += (long) gap + 1;
+    }
+
+    /*
+     * Adds the next item of the stream.
+     */
+    public void offer(Item item) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        count++;
+        if (count <= k) {
+            reservoir[(int) count - 1] = item;
+            if (count == k && algorithm == Algorithm.L) {
+                w = Math.exp(Math.log(positiveUniform()) / k);
+                next = count;
+                advance();
+            }
+        }
+        else if (algorithm == Algorithm.R) {
+            long j = uniform(count);
+            if (j < k) reservoir[(int) j] = item;
+        }
+        else if (count == next) {
+            reservoir[random.uniform(k)] = item;
+            w *= Math.exp(Math.log(positiveUniform()) / k);
+            advance();
+        }
+    }
+
+    /*
+     * Returns how many of the coming items offer() would pass over:
+     * always 0 with Algorithm R, and while the reservoir fills.
+     */
+    public long skippable() {
+        if (algorithm == Algorithm.R || count < k) return 0;
+        return next - count - 1;
+    }
+
+    /*
+     * Counts m items of the stream that were passed over without
+     * being offered.
+     *
+     * @throw IllegalArgumentException unless 0 <= m <= skippable()
+     */
+    public void skip(long m) {
+        if (m < 0 || m > skippable())
+            throw new IllegalArgumentException("Cannot skip " + m + " items");
+        count += m;
+    }
+
+    /*
+     * Returns an iterator over the sample, in no particular order
+     */
+    public Iterator<Item> iterator() {
+        return Arrays.asList(reservoir).subList(0, size()).iterator();
+    }
+
+    /*
+     * Unit test. Samples k of 0..n-1 many times with both algorithms,
+     * skipping whatever can be skipped, and prints how often each
+     * number was kept; every count should be near trials * k / n.
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int trials = 100000;
+        RandomSource random = RandomSource.splittable(42);
+        for (Algorithm algorithm : Algorithm.values()) {
+            int[] kept = new int[n];
+            for (int t = 0; t < trials; t++) {
+                ReservoirSampler<Integer> sampler =
+                    new ReservoirSampler<Integer>(k, random, algorithm);
+                for (int i = 0; i < n; i++) {
+                    long m = Math.min(sampler.skippable(), n - i);
+                    if (m > 0) {
+                        sampler.skip(m);
+                        i += (int) m - 1;
+                    }
+                    else sampler.offer(i);
+                }
+                if (sampler.count() != n) throw new AssertionError("Counted " + sampler.count());
+                for (int x : sampler) kept[x]++;
+            }
+            System.out.println(algorithm + ": expected " + (double) trials * Math.min(k, n) / n
+                               + ", got " + Arrays.toString(kept));
+        }
+    }
+}
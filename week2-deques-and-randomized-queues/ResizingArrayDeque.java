@@ -0,0 +1,170 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 ResizingArrayDeque.java
+ *  Execution:    java-algs4 ResizingArrayDeque < input.txt
+ *  Dependencies: Iterator.java StdIn.java
+ *
+ *  Implements deque with a resizing circular array.
+ *  Same API as Deque, but the items live in one array whose capacity is
+ *  a power of two, so an index wraps around with a mask instead of a
+ *  division, and no node is allocated per item.
+ *
+ ******************************************************************************/
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import edu.princeton.cs.algs4.StdIn;
+
+public class ResizingArrayDeque<Item> implements Iterable<Item> {
+    private static final int MIN_CAPACITY = 8;
+    
+    private Item[] a;    // items, a.length is a power of two
+    private int head;    // index of the first item
+    private int size;    // number of items
+    
+    /*
+     * Constructs an empty deque.
+     */
+    public ResizingArrayDeque() {
+        a = newArray(MIN_CAPACITY);
+        head = 0;
+        size = 0;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <Item> Item[] newArray(int capacity) {
+        return (Item[]) new Object[capacity];
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /*
+     * Returns the number of items on the deque
+     */
+    public int size() {
+        return size;
+    }
+    
+    /*
+     * Moves the items to a new array of the given capacity,
+     * the first item at index 0.
+     */
+    private void resize(int capacity) {
+        assert capacity >= size && Integer.bitCount(capacity) == 1;
+        Item[] temp = newArray(capacity);
+        int mask = a.length - 1;
+        for (int i = 0; i < size; i++) {
+            temp[i] = a[(head + i) & mask];
+        }
+        a = temp;
+        head = 0;
+    }
+    
+    /*
+     * Halves the array when it is only a quarter full.
+     */
+    private void shrink() {
+        if (a.length > MIN_CAPACITY && size == a.length / 4) resize(a.length / 2);
+    }
+    
+    /*
+     * Adds the item to the front
+     */
+    public void addFirst(Item item) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        if (size == a.length) resize(2 * a.length);
+        head = (head - 1) & (a.length - 1);
+        a[head] = item;
+        size++;
+    }
+    
+    /*
+     * Adds the item to the end
+     */
+    public void addLast(Item item) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        if (size == a.length) resize(2 * a.length);
+        a[(head + size) & (a.length - 1)] = item;
+        size++;
+    }
+    
+    /*
+     * Removes and returns the item from the front
+     */
+    public Item removeFirst() {
+        if (isEmpty()) throw new NoSuchElementException("Deque underflow");
+        Item item = a[head];
+        a[head] = null; // to avoid loitering
+        head = (head + 1) & (a.length - 1);
+        size--;
+        shrink();
+        return item;
+    }
+    
+    /*
+     * Removes and returns the item from the end
+     */
+    public Item removeLast() {
+        if (isEmpty()) throw new NoSuchElementException("Deque underflow");
+        int last = (head + size - 1) & (a.length - 1);
+        Item item = a[last];
+        a[last] = null; // to avoid loitering
+        size--;
+        shrink();
+        return item;
+    }
+    
+    /*
+     * Returns an iterator over items in order from front to end
+     */
+    public Iterator<Item> iterator() {
+        return new ArrayIterator();
+    }
+    
+    /*
+     * Iterator
+     */
+    private class ArrayIterator implements Iterator<Item> {
+        private int i = 0;
+        
+        public boolean hasNext() {
+            return i < size;
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public Item next() {
+            if (!hasNext()) throw new NoSuchElementException("No next element");
+            return a[(head + i++) & (a.length - 1)];
+        }
+    }
+    
+    /*
+     * Unit test. Reads strings from standard input, adds
+     * them alternately to the front and the end, and prints
+     * the deque; "-" removes alternately from the front and the end.
+     */
+    public static void main(String[] args) {
+        ResizingArrayDeque<String> deque = new ResizingArrayDeque<String>();
+        boolean front = true;
+        while (!StdIn.isEmpty()) {
+            String item = StdIn.readString();
+            if (!item.equals("-")) {
+                if (front) deque.addFirst(item);
+                else       deque.addLast(item);
+            }
+            else if (!deque.isEmpty()) {
+                if (front) System.out.println("Removed: " + deque.removeFirst());
+                else       System.out.println("Removed: " + deque.removeLast());
+            }
+            front = !front;
+        }
+        System.out.println("Deque size: " + deque.size());
+        for (String s : deque) {
+            System.out.println(s);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/******************************************************************************
+ *  Compilation:  javac WeightedRandomizedQueue.java
+ *  Execution:    java WeightedRandomizedQueue
+ *  Dependencies: RandomSource.java
+ *
+ *  Implements a randomized queue whose items are drawn with probability
+ *  proportional to their weights.
+ *
+ *  Items and weights sit in parallel arrays, as in RandomizedQueue, and a
+ *  Fenwick tree (binary indexed tree) over the weights gives the prefix
+ *  sums. A draw picks a uniform point in [0, total weight) and descends
+ *  the tree to the item it falls on. enqueue, dequeue and sample take
+ *  O(log n) time; the weights are stored as doubles, never boxed.
+ *
+ *  Removals update the tree by subtraction, so rounding errors build up
+ *  over many operations; the tree is rebuilt from the weights whenever
+ *  the arrays are resized, which bounds them.
+ *
+ ******************************************************************************/
+
+import java.util.NoSuchElementException;
+
+public class WeightedRandomizedQueue<Item> {
+    private static final int MIN_CAPACITY = 8;
+
+    private Item[] items;
+    private double[] weights;
+    private double[] tree;   // Fenwick tree over weights, 1-based
+    private int size;
+    private final RandomSource random;
+
+    // Initializes an empty queue drawing from the given source
+    public WeightedRandomizedQueue(RandomSource random) {
+        if (random == null) throw new IllegalArgumentException("Null random source");
+        this.random = random;
+        resize(MIN_CAPACITY);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Returns the sum of the weights of the items
+     */
+    public double totalWeight() {
+        return prefix(size);
+    }
+
+    /*
+     * Moves the items to arrays of the given capacity, a power of two,
+     * and builds the tree again in linear time.
+     */
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        Item[] newItems = (Item[]) new Object[capacity];
+        double[] newWeights = new double[capacity];
+        if (items != null) {
+            System.arraycopy(items, 0, newItems, 0, size);
+            System.arraycopy(weights, 0, newWeights, 0, size);
+        }
+        items = newItems;
+        weights = newWeights;
+        tree = new double[capacity + 1];
+        for (int i = 1; i <= size; i++) {
+            tree[i] += weights[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= capacity) tree[parent] += tree[i];
+        }
+    }
+
+    /*
+     * Adds delta to the weight at 0-based index i.
+     */
+    private void update(int i, double delta) {
+        for (int j = i + 1; j < tree.length; j += j & -j) tree[j] += delta;
+    }
+
+    /*
+     * Returns the sum of the first n weights.
+     */
+    private double prefix(int n) {
+        double sum = 0;
+        for (int j = n; j > 0; j -= j & -j) sum += tree[j];
+        return sum;
+    }
+
+    /*
+     * Returns the index of the item that a uniform point of
+     * [0, total weight) falls on: the smallest i with prefix(i + 1) > point.
+     */
+    private int draw() {
+        double point = random.uniform() * totalWeight();
+        int i = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int j = i + step;
+            if (j < tree.length && tree[j] <= point) {
+                point -= tree[j];
+                i = j;
+            }
+        }
+        // rounding can carry the point past the last item
+        return Math.min(i, size - 1);
+    }
+
+    /*
+     * Adds an item with the given weight, which must be positive and finite
+     */
+    public void enqueue(Item item, double weight) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        if (!(weight > 0) || Double.isInfinite(weight))
+            throw new IllegalArgumentException("Illegal weight: " + weight);
+        if (size == items.length) resize(2 * items.length);
+        items[size] = item;
+        weights[size] = weight;
+        update(size, weight);
+        size++;
+    }
+
+    /*
+     * Removes and returns an item, chosen with probability proportional
+     * to its weight
+     */
+    public Item dequeue() {
+        if (isEmpty()) throw new NoSuchElementException("Queue underflow");
+        int i = draw();
+        Item item = items[i];
+        int last = size - 1;
+
+        // Move the last item into the empty spot
+        update(i, weights[last] - weights[i]);
+        update(last, -weights[last]);
+        items[i] = items[last];
+        weights[i] = weights[last];
+        items[last] = null; // to avoid loitering
+        weights[last] = 0;
+        size--;
+
+        if (items.length > MIN_CAPACITY && size == items.length / 4) resize(items.length / 2);
+        return item;
+    }
+
+    /*
+     * Returns an item chosen with probability proportional to its
+     * weight (but do not remove it)
+     */
+    public Item sample() {
+        if (isEmpty()) throw new NoSuchElementException("Queue underflow");
+        return items[draw()];
+    }
+
+    /*
+     * Unit test. Draws items of weights 1, 2, 3 and 4, and prints
+     * how often each came out; they should be near 10%, 20%, 30%, 40%.
+     */
+    public static void main(String[] args) {
+        RandomSource random = RandomSource.splittable(42);
+        WeightedRandomizedQueue<Integer> queue = new WeightedRandomizedQueue<Integer>(random);
+        for (int i = 1; i <= 4; i++) queue.enqueue(i, i);
+
+        int trials = 1000000;
+        int[] sampled = new int[5];
+        for (int t = 0; t < trials; t++) sampled[queue.sample()]++;
+        System.out.printf("sample:  %.3f %.3f %.3f %.3f%n", (double) sampled[1] / trials,
+                          (double) sampled[2] / trials, (double) sampled[3] / trials,
+                          (double) sampled[4] / trials);
+
+        int[] first = new int[5];
+        for (int t = 0; t < trials / 10; t++) {
+            WeightedRandomizedQueue<Integer> q = new WeightedRandomizedQueue<Integer>(random);
+            for (int i = 1; i <= 4; i++) q.enqueue(i, i);
+            first[q.dequeue()]++;
+            while (!q.isEmpty()) q.dequeue();
+        }
+        System.out.printf("dequeue: %.3f %.3f %.3f %.3f%n", first[1] * 10.0 / trials,
+                          first[2] * 10.0 / trials, first[3] * 10.0 / trials,
+                          first[4] * 10.0 / trials);
+    }
+}
@@ -0,0 +1,203 @@
+/******************************************************************************
+ *  Compilation:  javac WeightedReservoirSampler.java
+ *  Execution:    java WeightedReservoirSampler
+ *  Dependencies: RandomSource.java
+ *
+ *  Keeps a weighted random sample of k items from a stream of unknown
+ *  length, without replacement: the sample is distributed as if items
+ *  were drawn one at a time with probability proportional to weight.
+ *
+ *  Uses Algorithm A-ExpJ (Efraimidis and Spirakis, "Weighted Random
+ *  Sampling with a Reservoir", 2006). Every item gets the key u^(1/w);
+ *  the sample is the k items with the largest keys, kept in a min-heap.
+ *  Once the reservoir is full, an exponential jump draws how much weight
+ *  passes before the next item that enters it, so only O(k log(N/k))
+ *  random numbers are drawn for N items.
+ *
+ *  Keys are kept as log(u) / w, which orders items the same way and does
+ *  not underflow for large weights. The heap is a pair of parallel
+ *  arrays, so the keys are never boxed.
+ *
+ ******************************************************************************/
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+public class WeightedReservoirSampler<Item> implements Iterable<Item> {
+    private final Item[] items;    // min-heap on keys, 0-based
+    private final double[] keys;
+    private final int k;
+    private final RandomSource random;
+    private long count;            // items seen so far
+    private double jump;           // weight left to pass before the next entry
+    private boolean pending;       // accept() let an item in, keep() is due
+    private double pendingWeight;
+
+    @SuppressWarnings("unchecked")
+    public WeightedReservoirSampler(int k, RandomSource random) {
+        if (k <= 0) throw new IllegalArgumentException("Sample size must be positive: " + k);
+        if (random == null) throw new IllegalArgumentException("Null random source");
+        this.k = k;
+        this.random = random;
+        items = (Item[]) new Object[k];
+        keys = new double[k];
+    }
+
+    /*
+     * Returns the number of items of the stream so far
+     */
+    public long count() {
+        return count;
+    }
+
+    /*
+     * Returns the number of items in the sample, min(k, count())
+     */
+    public int size() {
+        return (int) Math.min(k, count);
+    }
+
+    private static void validate(double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight))
+            throw new IllegalArgumentException("Illegal weight: " + weight);
+    }
+
+    /*
+     * Returns log(u) for a uniform u in (0, 1], a finite value <= 0.
+     */
+    private double logUniform() {
+        return Math.log(1.0 - random.uniform());
+    }
+
+    /*
+     * Draws the weight to pass before the next entry, log(r) / log(T)
+     * for the smallest key T of the reservoir. Nothing can enter any
+     * more if the smallest key is already the largest possible one.
+     */
+    private void nextJump() {
+        jump = keys[0] < 0 ? logUniform() / keys[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /*
+     * Counts the next item of the stream, of the given weight, and
+     * returns whether it enters the sample. If so, the item must be
+     * handed over right away with keep(); if not, it is not needed at
+     * all, so a reader can skip it without building it.
+     */
+    public boolean accept(double weight) {
+        validate(weight);
+        if (pending) throw new IllegalStateException("keep() the accepted item first");
+        count++;
+        if (count > k) {
+            jump -= weight;
+            if (jump > 0) return false;
+        }
+        pending = true;
+        pendingWeight = weight;
+        return true;
+    }
+
+    /*
+     * Puts the item that accept() just let in into the sample.
+     */
+    public void keep(Item item) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        if (!pending) throw new IllegalStateException("No accepted item to keep");
+        pending = false;
+        double weight = pendingWeight;
+        if (count <= k) {
+            // filling up: every item gets its key u^(1/w)
+            int i = (int) count - 1;
+            items[i] = item;
+            keys[i] = logUniform() / weight;
+            siftUp(i);
+            if (count == k) nextJump();
+            return;
+        }
+        // the key of the entering item is drawn above the smallest key T:
+        // u^(1/w) for u uniform in (T^w, 1)
+        double tw = Math.exp(weight * keys[0]);
+        double r = tw + (1.0 - tw) * random.uniform();
+        items[0] = item;
+        keys[0] = Math.log(r) / weight;
+        siftDown(0);
+        nextJump();
+    }
+
+    /*
+     * Adds the next item of the stream, with the given weight.
+     */
+    public void offer(Item item, double weight) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        if (accept(weight)) keep(item);
+    }
+
+   /***************************************************************************
+    *  Min-heap on keys
+    ***************************************************************************/
+
+    private void swap(int i, int j) {
+        Item item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (keys[parent] <= keys[i]) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        int n = size();
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && keys[child + 1] < keys[child]) child++;
+            if (keys[i] <= keys[child]) return;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /*
+     * Returns an iterator over the sample, in no particular order
+     */
+    public Iterator<Item> iterator() {
+        return Arrays.asList(items).subList(0, size()).iterator();
+    }
+
+    /*
+     * Unit test. Samples 2 of items with weights 1, 2, 3 and 4 many
+     * times, and compares how often each was kept with the exact
+     * probabilities of drawing 2 without replacement.
+     */
+    public static void main(String[] args) {
+        double[] weights = { 1, 2, 3, 4 };
+        int k = 2, trials = 200000;
+        RandomSource random = RandomSource.splittable(42);
+        int[] kept = new int[weights.length];
+        for (int t = 0; t < trials; t++) {
+            WeightedReservoirSampler<Integer> sampler =
+                new WeightedReservoirSampler<Integer>(k, random);
+            for (int i = 0; i < weights.length; i++) sampler.offer(i, weights[i]);
+            for (int x : sampler) kept[x]++;
+        }
+        double total = 0;
+        for (double w : weights) total += w;
+        for (int i = 0; i < weights.length; i++) {
+            // kept first, or kept second after some j != i
+            double p = weights[i] / total;
+            for (int j = 0; j < weights.length; j++) {
+                if (j != i) p += weights[j] / total * weights[i] / (total - weights[j]);
+            }
+            System.out.printf("weight %.0f: kept %.4f, expected %.4f%n",
+                              weights[i], (double) kept[i] / trials, p);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/******************************************************************************
+ *  Compilation:  javac WorkStealingDeque.java
+ *  Execution:    java WorkStealingDeque [items] [thieves]
+ *  Dependencies: none
+ *
+ *  Implements a lock-free work-stealing deque (Chase and Lev, "Dynamic
+ *  Circular Work-Stealing Deque", SPAA 2005), with the memory orderings
+ *  of Le, Pop, Cohen and Zappa Nardelli, "Correct and Efficient
+ *  Work-Stealing for Weak Memory Models", PPoPP 2013.
+ *
+ *  One owner thread pushes and pops items at the bottom; any number of
+ *  other threads steal items from the top. Items live in a circular
+ *  array whose capacity is a power of two, and only the owner grows it.
+ *
+ ******************************************************************************/
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WorkStealingDeque<Item> {
+    private static final int MIN_CAPACITY = 32;
+
+    private static final VarHandle TOP;
+    private static final VarHandle BOTTOM;
+    private static final VarHandle ARRAY;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TOP = lookup.findVarHandle(WorkStealingDeque.class, "top", long.class);
+            BOTTOM = lookup.findVarHandle(WorkStealingDeque.class, "bottom", long.class);
+            ARRAY = lookup.findVarHandle(WorkStealingDeque.class, "array", Object[].class);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Items are at indices [top, bottom), taken modulo array.length.
+    // Both only grow, so they are longs that never wrap in practice.
+    private volatile long top;
+    private volatile long bottom;
+    private volatile Object[] array;
+
+    /*
+     * Constructs an empty deque.
+     */
+    public WorkStealingDeque() {
+        array = new Object[MIN_CAPACITY];
+    }
+
+    /*
+     * Returns the number of items, which may be stale by the time it
+     * is used if other threads are stealing.
+     */
+    public int size() {
+        long n = (long) BOTTOM.getOpaque(this) - (long) TOP.getOpaque(this);
+        return n < 0 ? 0 : (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /*
+     * Adds the item at the bottom. Owner thread only.
+     */
+    public void push(Item item) {
+        if (item == null) throw new IllegalArgumentException("Null not accepted");
+        long b = (long) BOTTOM.getOpaque(this);
+        long t = (long) TOP.getAcquire(this);
+        Object[] a = (Object[]) ARRAY.getOpaque(this);
+        if (b - t > a.length - 1) {
+            a = grow(a, t, b);
+        }
+        SLOT.setOpaque(a, (int) b & (a.length - 1), item);
+        // the item must be visible before the new bottom
+        VarHandle.releaseFence();
+        BOTTOM.setOpaque(this, b + 1);
+    }
+
+    /*
+     * Copies the items [t, b) into an array twice as large and
+     * publishes it. Thieves still reading the old array see the same
+     * items at the indices they can claim.
+     */
+    private Object[] grow(Object[] a, long t, long b) {
+        Object[] bigger = new Object[2 * a.length];
+        for (long i = t; i < b; i++) {
+            bigger[(int) i & (bigger.length - 1)] = a[(int) i & (a.length - 1)];
+        }
+        ARRAY.setRelease(this, bigger);
+        return bigger;
+    }
+
+    /*
+     * Removes and returns the item at the bottom, the one pushed last.
+     * Owner thread only.
+     *
+     * @return the item, or null if the deque is empty
+     */
+    @SuppressWarnings("unchecked")
+    public Item pop() {
+        long b = (long) BOTTOM.getOpaque(this) - 1;
+        Object[] a = (Object[]) ARRAY.getOpaque(this);
+        BOTTOM.setOpaque(this, b);
+        // the new bottom must be visible before top is read, so that
+        // the owner and a thief cannot both take the last item
+        VarHandle.fullFence();
+        long t = (long) TOP.getOpaque(this);
+
+        if (t > b) {
+            // empty
+            BOTTOM.setOpaque(this, b + 1);
+            return null;
+        }
+        int slot = (int) b & (a.length - 1);
+        Item item = (Item) SLOT.getOpaque(a, slot);
+        if (t == b) {
+            // the last item: race thieves for it
+            if (!TOP.compareAndSet(this, t, t + 1)) item = null;
+            BOTTOM.setOpaque(this, b + 1);
+        }
+        else {
+            // no thief can claim this slot any more, avoid loitering
+            SLOT.setOpaque(a, slot, null);
+        }
+        return item;
+    }
+
+    /*
+     * Removes and returns the item at the top, the oldest one.
+     * Any thread.
+     *
+     * @return the item, or null if the deque is empty or another
+     *         thread took the item first
+     */
+    @SuppressWarnings("unchecked")
+    public Item steal() {
+        long t = (long) TOP.getAcquire(this);
+        VarHandle.fullFence();
+        long b = (long) BOTTOM.getAcquire(this);
+        if (t >= b) return null;
+
+        Object[] a = (Object[]) ARRAY.getAcquire(this);
+        Item item = (Item) SLOT.getAcquire(a, (int) t & (a.length - 1));
+        // The slot is not cleared here: once top moves on, the owner
+        // may already be reusing it. Stolen items stay referenced until
+        // the owner overwrites their slot.
+        if (!TOP.compareAndSet(this, t, t + 1)) return null;
+        return item;
+    }
+
+    /*
+     * Unit test. The owner pushes items and pops some of them while
+     * thieves steal; checks that every item is taken exactly once.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int thieves = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        final WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+        final AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        final AtomicLong stolen = new AtomicLong();
+        final boolean[] done = new boolean[1];
+
+        Thread[] threads = new Thread[thieves];
+        for (int k = 0; k < thieves; k++) {
+            threads[k] = new Thread(new Runnable() {
+                public void run() {
+                    while (true) {
+                        Integer item = deque.steal();
+                        if (item != null) {
+                            taken.incrementAndGet(item);
+                            stolen.incrementAndGet();
+                        }
+                        else if (isDone() && deque.isEmpty()) return;
+                    }
+                }
+
+                private boolean isDone() {
+                    synchronized (done) {
+                        return done[0];
+                    }
+                }
+            });
+            threads[k].start();
+        }
+
+        long popped = 0;
+        for (int i = 0; i < n; i++) {
+            deque.push(i);
+            if (i % 3 == 0) {
+                Integer item = deque.pop();
+                if (item != null) {
+                    taken.incrementAndGet(item);
+                    popped++;
+                }
+            }
+        }
+        synchronized (done) {
+            done[0] = true;
+        }
+        for (Thread thread : threads) thread.join();
+
+        for (int i = 0; i < n; i++) {
+            if (taken.get(i) != 1)
+                throw new AssertionError("Item " + i + " taken " + taken.get(i) + " times");
+        }
+        System.out.println(n + " items: " + popped + " popped, " + stolen.get() + " stolen");
+    }
+}
@@ -1,7 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac BruteCollinearPoints.java
  *  Execution:    java BruteCollinearPoints
- *  Dependencies: Point.java LineSegment.java ArrayList.java Arrays.java
+ *  Dependencies: Point.java PointSet.java LineSegment.java Slopes.java
  *  
  *  An immutable data type for points in the plane.
  *  For use on Coursera, Algorithms Part I programming assignment.
@@ -18,7 +18,7 @@ import java.util.Arrays;
 
 public class BruteCollinearPoints {
     /*
-     * Finds all line segments containing 4 points
+     * Finds all maximal line segments containing 4 or more points
      */
     private LineSegment[] segments;
     
@@ -28,70 +28,70 @@ public class BruteCollinearPoints {
      * @param points a list of Point object
      */
     public BruteCollinearPoints(Point[] points) {
+        this(PointSet.of(points));
+    }
+    
+    /*
+     * Constructor over coordinate arrays, with no Point per point
+     * 
+     * @param points the points
+     */
+    public BruteCollinearPoints(PointSet points) {
         // null input
         if (points == null) {
             throw new IllegalArgumentException("Null array");
         }
-
-        // Corner case: only one entry and the entry is null
-        for (Point p : points) {
-            if (p == null) throw new IllegalArgumentException("Null entry");
-        }
-        
-        // Make an array copy
-        Point[] pointsCopy = Arrays.copyOf(points, points.length);
         
-        // Sort the array
-        Arrays.sort(pointsCopy);
-        
-        // chech input validity
-        validInput(pointsCopy);
+        // Sort the array, checking for duplicates
+        PointSet sorted = points.sorted();
         
         // Parse the array and add the segment to the array
-        // ArrayList<LineSegment> foundSegments = new ArrayList<>();
-        segments = findCollinear(pointsCopy);
+        segments = findCollinear(sorted.xs, sorted.ys);
     }
 
     /*
-     * Find collinear line segments and store them in 
-     * private field ls.
+     * Find the maximal collinear line segments. A line is only taken
+     * up at its first point i, and ends at the last point m found for
+     * it; the same (i, m) comes up again for every other pair j, k on
+     * the line, and is dropped by the set of endpoint pairs.
      * 
-     * @param a sorted points without duplicates
-     * @return none
+     * @param xs, ys coordinates of sorted points without duplicates
+     * @return the segments
      */
-    private LineSegment[] findCollinear(Point[] a) {
+    private LineSegment[] findCollinear(int[] xs, int[] ys) {
         // Local variables
         ArrayList<LineSegment> foundSegments = new ArrayList<>();
-        int pointsLength = a.length;
-        LineSegment ls;
+        PairSet found = new PairSet();
+        int pointsLength = xs.length;
         
         for (int i = 0; i < pointsLength - 3; i++) {
             for (int j = i + 1; j < pointsLength - 2; j++) {
+                
+                // A line through an earlier point was taken up there,
+                // with all of its points
+                if (hasEarlier(xs, ys, i, j)) {
+                    continue;
+                }
                 for (int k = j + 1; k < pointsLength - 1; k++) {
                     
                     // While the first 3 points are not collinear, any
                     // further progress would be futile as to find
                     // collinear points. Thus, skip and start the next loop
-                    if (!(collinear(a[i], a[j], a[k]))) {
+                    if (!(collinear(xs, ys, i, j, k))) {
                         continue;
                     }
-                    for (int m = k + 1; m < pointsLength; m++) {                        
-                        // Debug: print out points
-                        // System.out.println("Current Points:");
-                        // System.out.println(a[i]);
-                        // System.out.println(a[j]);
-                        // System.out.println(a[k]);
-                        // System.out.println(a[l]);
-                        
-                        // If four points are collinear
-                        if (collinear(a[i], a[j], a[k], a[m])) {
-                            ls = new LineSegment(a[i], a[m]);
-                            if (!duplicateSegment(ls, foundSegments)) {
-                                // System.out.println("Collinear!");
-                                foundSegments.add(ls);
-                            }
+                    
+                    // The last point of the line, if there are 4
+                    int last = -1;
+                    for (int m = k + 1; m < pointsLength; m++) {
+                        if (collinear(xs, ys, i, j, m)) {
+                            last = m;
                         }
                     }
+                    if (last >= 0 && found.add(i, last)) {
+                        foundSegments.add(new LineSegment(new Point(xs[i], ys[i]),
+                                                          new Point(xs[last], ys[last])));
+                    }
                 }
             }
         }
@@ -113,50 +113,27 @@ public class BruteCollinearPoints {
     }
     
     /*
-     * Check whether the inputs to the constructor
-     * is valid.
+     * Check whether the points i, j and k are collinear, by
+     * comparing the slopes of j and k with i exactly.
      * 
-     * @params p sorted Point[] input.
+     * @params xs, ys the coordinates, and three distinct indices
+     * @return boolean
      */
-    private boolean validInput(Point[] p) {
-        /*
-        // edge case
-        if (p.length == 1 && p[0] == null) {
-            throw new IllegalArgumentException("Null entries");
-        }
-        */
-        
-        for (int i = 0; i < p.length; i++) {
-            // null entries
-            // if (p[i] == null) {
-            //     throw new IllegalArgumentException("Null entries");
-            // }
-            
-            // duplicates
-            if (i < p.length - 1 && p[i].compareTo(p[i + 1]) == 0) {
-                throw new IllegalArgumentException("Duplicated entries");
-            }
-        }
-        return true;
+    private static boolean collinear(int[] xs, int[] ys, int i, int j, int k) {
+        return Slopes.sameSlope((long) ys[j] - ys[i], (long) xs[j] - xs[i],
+                                (long) ys[k] - ys[i], (long) xs[k] - xs[i]);
     }
-    
+
     /*
-     * Check whether fours points are collinear by
-     * comparing the slopes of the last 3 points with
-     * the first point.
-     * Returns False while ab and ac are not collinear,
-     * in which case the test of ad is redundant.
-     * 
-     * @params four distinct poinits
-     * @return boolean
+     * Check whether a point before i is on the line through i and j.
      */
-    private boolean collinear(Point a, Point b, Point c) {
-        // return a.slopeTo(b) == a.slopeTo(c);
-        return a.slopeOrder().compare(b, c) == 0;
-    }
-    
-    private boolean collinear(Point a, Point b, Point c, Point d) {
-        return a.slopeOrder().compare(b, c) == 0 && a.slopeOrder().compare(c, d) == 0;
+    private static boolean hasEarlier(int[] xs, int[] ys, int i, int j) {
+        for (int a = 0; a < i; a++) {
+            if (collinear(xs, ys, i, j, a)) {
+                return true;
+            }
+        }
+        return false;
     }
 
    /***************************************************************************
@@ -164,27 +141,55 @@ public class BruteCollinearPoints {
     ***************************************************************************/
     
     /*
-     * Check whether a line segment is already in an ArrayList or not.
-     * 
-     * @param ls the line segment to be checked
-     * @param seg the existing segment with which the ls is checked with
-     * @return boolean true if duplicate
-     * @return boolean false if not duplicate
+     * A set of segments, as pairs of indices of their endpoints packed
+     * into one long, in an open-addressing table. 0 marks an empty
+     * slot; no pair packs to 0, as the first index is below the second.
      */
-    private boolean duplicateSegment(LineSegment ls, Iterable<LineSegment> seg) {
-        for (LineSegment m : seg) {
-            // System.out.println("ls toString: " + ls.toString());
-            // System.out.println("l toString: " + l.toString());
+    private static class PairSet {
+        private long[] table = new long[16];
+        private int size;
+        
+        /*
+         * Add the pair (i, m), and return false if it was there already.
+         */
+        boolean add(int i, int m) {
+            long pair = (long) i << 32 | m;
+            int mask = table.length - 1;
+            int s = slot(pair, mask);
+            while (table[s] != 0) {
+                if (table[s] == pair) {
+                    return false;
+                }
+                s = (s + 1) & mask;
+            }
+            table[s] = pair;
             
-            // Check whether the line segment is already in the ArrayList
-            // avoid "==" because we are comparing values rather than
-            // objects.
-            if (ls.toString().equals(m.toString())) {
-                // System.out.println("These are duplicates");
-                return true;
+            // at most half full
+            if (++size * 2 > table.length) {
+                resize();
+            }
+            return true;
+        }
+        
+        private static int slot(long pair, int mask) {
+            long h = pair * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+        
+        private void resize() {
+            long[] old = table;
+            table = new long[2 * old.length];
+            int mask = table.length - 1;
+            for (long pair : old) {
+                if (pair != 0) {
+                    int s = slot(pair, mask);
+                    while (table[s] != 0) {
+                        s = (s + 1) & mask;
+                    }
+                    table[s] = pair;
+                }
             }
         }
-        return false;
     }
     
     
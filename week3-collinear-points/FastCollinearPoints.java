@@ -1,10 +1,14 @@
 /******************************************************************************
  *  Compilation:  javac FastCollinearPoints.java
- *  Execution:    java FastCollinearPoints
- *  Dependencies: Point.java LineSegment.java
+ *  Execution:    java FastCollinearPoints input.txt [parallelism]
+ *  Dependencies: Point.java PointSet.java LineSegment.java Slopes.java
  *  
  *  An immutable data type for points in the plane.
  *  For use on Coursera, Algorithms Part I programming assignment.
+ *  
+ *  Each pivot sorts a primitive long[] of slope keys, carrying point
+ *  indices, rather than Point[] with a comparator; slopes are told
+ *  apart exactly with the cross products of Slopes.java.
  * 
  * @author Weisi Zhan
  *
@@ -15,6 +19,8 @@ import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdOut;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class FastCollinearPoints {
     /*
@@ -22,60 +28,195 @@ public class FastCollinearPoints {
      */
     private ArrayList<LineSegment> segments = new ArrayList<>();
     
+    // leaves of the fork-join search per worker thread
+    private static final int TASKS_PER_THREAD = 8;
+    
     /*
      * Constructor
      * 
      * @param points an array of Point object
      */
     public FastCollinearPoints(Point[] points) {
+        this(PointSet.of(points), 1);
+    }
+    
+    /*
+     * Constructor that spreads the pivots over a fork-join pool.
+     * Each task has its own scratch buffers and list of segments, and
+     * the lists are joined in pivot order, so the segments come out
+     * the same as with one thread.
+     * 
+     * @param points an array of Point object
+     * @param parallelism number of worker threads, 1 runs in the caller
+     */
+    public FastCollinearPoints(Point[] points, int parallelism) {
+        this(PointSet.of(points), parallelism);
+    }
+    
+    /*
+     * Constructor over coordinate arrays, with no Point per point
+     * 
+     * @param points the points
+     */
+    public FastCollinearPoints(PointSet points) {
+        this(points, 1);
+    }
+    
+    /*
+     * Constructor over coordinate arrays, on a fork-join pool
+     * 
+     * @param points the points
+     * @param parallelism number of worker threads, 1 runs in the caller
+     */
+    public FastCollinearPoints(PointSet points, int parallelism) {
         // null input
         if (points == null) {
             throw new IllegalArgumentException("Null array");
         }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Illegal parallelism: " + parallelism);
+        }
         
-        // Check for null entry
-        for (Point p : points) {
-            if (p == null) throw new IllegalArgumentException("Null entry");
+        // Sort the points, checking for duplicates, so that index
+        // order is point order
+        PointSet sorted = points.sorted();
+        int[] xs = sorted.xs;
+        int[] ys = sorted.ys;
+        int n = xs.length;
+        
+        // Loop through the points: each one is the pivot once.
+        int pivots = Math.max(0, n - 3);
+        if (parallelism == 1) {
+            Scratch scratch = new Scratch(n);
+            for (int i = 0; i < pivots; i++) {
+                findSegments(xs, ys, i, scratch, segments);
+            }
+        }
+        else {
+            // about TASKS_PER_THREAD leaves per thread, to even out the load
+            int grain = Math.max(1, pivots / (TASKS_PER_THREAD * parallelism));
+            PivotTask task = new PivotTask(xs, ys, 0, pivots, grain);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                segments = pool.invoke(task);
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * Finds the segments of pivots [lo, hi) by splitting the range in
+     * halves until at most grain pivots are left.
+     */
+    private static class PivotTask extends RecursiveTask<ArrayList<LineSegment>> {
+        private static final long serialVersionUID = 1L;
+        private final int[] xs, ys;
+        private final int lo, hi, grain;
+        
+        PivotTask(int[] xs, int[] ys, int lo, int hi, int grain) {
+            this.xs = xs;
+            this.ys = ys;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+        
+        @Override
+        protected ArrayList<LineSegment> compute() {
+            if (hi - lo <= grain) {
+                ArrayList<LineSegment> found = new ArrayList<>();
+                Scratch scratch = new Scratch(xs.length);
+                for (int i = lo; i < hi; i++) findSegments(xs, ys, i, scratch, found);
+                return found;
+            }
+            int mid = (lo + hi) >>> 1;
+            PivotTask left = new PivotTask(xs, ys, lo, mid, grain);
+            PivotTask right = new PivotTask(xs, ys, mid, hi, grain);
+            invokeAll(left, right);
+            ArrayList<LineSegment> found = left.join();
+            found.addAll(right.join());
+            return found;
         }
+    }
+    
+    /*
+     * Buffers for one pivot at a time, allocated once per search.
+     */
+    private static class Scratch {
+        private final long[] keys;
+        private final int[] order;
+        private final int[] aux;
+        private final long[] dy;
+        private final long[] dx;
         
-        // check for duplicates and null entries
-        Point[] pointsCopy = Arrays.copyOf(points, points.length);
-        Arrays.sort(pointsCopy);
-        validInput(pointsCopy);
+        Scratch(int n) {
+            keys = new long[n];
+            order = new int[n];
+            aux = new int[n];
+            dy = new long[n];
+            dx = new long[n];
+        }
+    }
+    
+    /*
+     * Finds the segments that start at the pivot i: sorts the slope
+     * keys of the other points, carrying their indices, and adds a
+     * segment for every run of 3 or more equal slopes whose points all
+     * come after the pivot.
+     * 
+     * @param xs, ys the coordinates of the sorted points
+     */
+    private static void findSegments(int[] xs, int[] ys, int i, Scratch s,
+                                     ArrayList<LineSegment> found) {
+        long[] keys = s.keys;
+        int m = 0;
+        for (int j = 0; j < xs.length; j++) {
+            if (j != i) keys[m++] = Slopes.key((long) ys[j] - ys[i], (long) xs[j] - xs[i], j);
+        }
+        Arrays.sort(keys, 0, m);
         
-        // Loop through the points:
+        int start = 0;
+        while (start < m) {
+            // While the coarse slope is the same, keep going.
+            int coarse = Slopes.coarse(keys[start]);
+            int end = start + 1;
+            while (end < m && Slopes.coarse(keys[end]) == coarse) end++;
+            if (end - start >= 3) findRuns(xs, ys, i, keys, start, end, s, found);
+            start = end;
+        }
+    }
+    
+    /*
+     * Splits the keys [start, end), which share a coarse slope, into
+     * runs of exactly equal slopes, and adds the segments among them.
+     * Within a run the indices are increasing, so the run starts at
+     * its smallest point and ends at its largest.
+     */
+    private static void findRuns(int[] xs, int[] ys, int i, long[] keys,
+                                 int start, int end, Scratch s, ArrayList<LineSegment> found) {
+        int[] order = s.order;
+        int m = end - start;
+        for (int k = 0; k < m; k++) order[k] = Slopes.index(keys[start + k]);
+        Slopes.offsets(xs, ys, i, order, m, s.dy, s.dx);
+        // stable and linear when all slopes are equal, the usual case
+        Slopes.sortBySlope(order, m, s.dy, s.dx, s.aux);
         
-        for (int i = 0; i < pointsCopy.length-3; i++) {
-            // First sort: sort points
-            Arrays.sort(pointsCopy);
-            Point currentPoint = pointsCopy[i];
-            
-            // For each point, sort the Point array with respect to the slopes
-            // they make with that point.
-            Arrays.sort(pointsCopy, currentPoint.slopeOrder());
-            
-            // no need to check the first point
-            // and there should be no duplicate
-            int start = 0;
-            while (start < pointsCopy.length) {
-            // Check whether the adjacent points have the same slope.
-            // If yes, they are collinear.
-                int end = start;
-                // While slope is the same, keep going.
-                while (end < pointsCopy.length && 
-                       currentPoint.slopeOrder().compare(pointsCopy[start],
-                                                         pointsCopy[end]) == 0) {
-                    end++;
-                }
-                // There are 4 or more elements included.
-                // Remember here pointsCopy[start] has the same slope with
-                // pointsCopy[end-1] rather than pointsCopy[end]
-                if (end - start >= 3 && currentPoint.compareTo(pointsCopy[start]) < 0) {
-                    segments.add(new LineSegment(currentPoint, pointsCopy[end-1]));
-                }
-                start = end;
+        int lo = 0;
+        while (lo < m) {
+            int first = order[lo];
+            int hi = lo + 1;
+            while (hi < m && Slopes.compare(s.dy[first], s.dx[first],
+                                            s.dy[order[hi]], s.dx[order[hi]]) == 0) {
+                hi++;
+            }
+            // There are 4 or more points, and the pivot is the smallest.
+            if (hi - lo >= 3 && first > i) {
+                int j = order[hi-1];
+                found.add(new LineSegment(new Point(xs[i], ys[i]), new Point(xs[j], ys[j])));
             }
-            // If 4 or more points are collinear, make a new segment and add it to the segments array.
+            lo = hi;
         }
     }
 
@@ -96,52 +237,6 @@ public class FastCollinearPoints {
         return segments.toArray(new LineSegment[numberOfSegments()]);
     }
     
-   /***************************************************************************
-    *  Inner class
-    ***************************************************************************/
-    // private class SlopeOrder implements Comparator<Point> {
-        
-        /*
-         * Compare the order with respect to slopes.
-         */
-    // }
-    
-   /***************************************************************************
-    *  Helper Functions
-    ***************************************************************************/
-    
-    /*
-     * Check for valid input. The input is not valid if
-     * - the input is null
-     * - any entry is null
-     * - any duplicate exists
-     * Throw Exceptions for various errors
-     * 
-     * @param point - an sorted array of Point object
-     * @return boolean - true for valid input
-     */
-    private boolean validInput(Point[] p) {
-        /*
-        // edge case
-        if (p.length == 1 && p[0] == null) {
-            throw new IllegalArgumentException("Null entries");
-        }
-        */
-        
-        for (int i = 0; i < p.length; i++) {
-            // null entries
-            // if (p[i] == null) {
-            //     throw new IllegalArgumentException("Null entries");
-            // }
-            
-            // duplicates
-            if (i < p.length - 1 && p[i].compareTo(p[i + 1]) == 0) {
-                throw new IllegalArgumentException("Duplicated entries");
-            }
-        }
-        return true;
-    }
-    
    /***************************************************************************
     *  Unit Test
     ***************************************************************************/    
@@ -168,7 +263,8 @@ public class FastCollinearPoints {
         StdDraw.show();
 
         // print and draw the line segments
-        FastCollinearPoints collinear = new FastCollinearPoints(points);
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        FastCollinearPoints collinear = new FastCollinearPoints(points, parallelism);
         for (LineSegment segment : collinear.segments()) {
             StdOut.println(segment);
             segment.draw();
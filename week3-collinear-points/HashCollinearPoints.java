@@ -0,0 +1,221 @@
+/******************************************************************************
+ *  Compilation:  javac HashCollinearPoints.java
+ *  Execution:    java HashCollinearPoints input.txt
+ *  Dependencies: Point.java PointSet.java LineSegment.java Slopes.java
+ *
+ *  Finds the maximal line segments through 4 or more points, like
+ *  FastCollinearPoints, in expected O(n^2) time instead of O(n^2 log n).
+ *
+ *  For each pivot, the other points are bucketed by slope in an
+ *  open-addressing hash table of primitive arrays, which keeps for
+ *  every slope the number of points and the first and last of them in
+ *  sorted order. A bucket of 3 or more points whose first point comes
+ *  after the pivot is a segment. Slots are marked with the pivot they
+ *  were last used for, so the table is never cleared, and nothing is
+ *  allocated per point.
+ *
+ *  A slope is keyed by the exact double dy / dx when the coordinates
+ *  span less than 2^16, and by the direction reduced by its gcd
+ *  otherwise. segments() returns the same segments as
+ *  FastCollinearPoints, in the same order.
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class HashCollinearPoints {
+    /*
+     * finds all line segments containing 4 or more points
+     */
+    private final ArrayList<LineSegment> segments = new ArrayList<>();
+
+    // The table: slot s holds slope (key1[s], key2[s]) if stamp[s] is
+    // the current pivot + 1.
+    private long[] key1, key2;
+    private int[] stamp, count, first, last;
+    private int mask;
+
+    // slots filled for the current pivot, in the order they were filled
+    private int[] used;
+    private int usedCount;
+
+    /*
+     * Constructor
+     *
+     * @param points an array of Point object
+     */
+    public HashCollinearPoints(Point[] points) {
+        this(PointSet.of(points));
+    }
+
+    /*
+     * Constructor over coordinate arrays, with no Point per point
+     *
+     * @param points the points
+     */
+    public HashCollinearPoints(PointSet points) {
+        // null input
+        if (points == null) {
+            throw new IllegalArgumentException("Null array");
+        }
+
+        // Sort the points, checking for duplicates, so that index
+        // order is point order
+        PointSet sorted = points.sorted();
+        int[] xs = sorted.xs;
+        int[] ys = sorted.ys;
+        int n = xs.length;
+
+        // at most half full
+        int capacity = Integer.highestOneBit(Math.max(2 * n, 2) - 1) << 1;
+        key1 = new long[capacity];
+        key2 = new long[capacity];
+        stamp = new int[capacity];
+        count = new int[capacity];
+        first = new int[capacity];
+        last = new int[capacity];
+        used = new int[n];
+        mask = capacity - 1;
+
+        boolean narrow = Slopes.narrow(xs, ys, n);
+        for (int i = 0; i < n - 3; i++) {
+            findSegments(xs, ys, i, narrow);
+        }
+
+        // drop the table
+        key1 = key2 = null;
+        stamp = count = first = last = used = null;
+    }
+
+    /*
+     * Adds point j to the bucket of slope (k1, k2) for pivot i.
+     */
+    private void add(long k1, long k2, int j, int i) {
+        long h = (k1 * 0x9E3779B97F4A7C15L) ^ (k2 * 0xC2B2AE3D27D4EB4FL);
+        int s = (int) (h ^ (h >>> 32)) & mask;
+        int mark = i + 1;
+        while (stamp[s] == mark) {
+            if (key1[s] == k1 && key2[s] == k2) {
+                count[s]++;
+                last[s] = j;
+                return;
+            }
+            s = (s + 1) & mask;
+        }
+        stamp[s] = mark;
+        key1[s] = k1;
+        key2[s] = k2;
+        count[s] = 1;
+        first[s] = j;
+        last[s] = j;
+        used[usedCount++] = s;
+    }
+
+    /*
+     * Finds the segments that start at the pivot i.
+     */
+    private void findSegments(int[] xs, int[] ys, int i, boolean narrow) {
+        usedCount = 0;
+        for (int j = 0; j < xs.length; j++) {
+            if (j == i) continue;
+            long dy = (long) ys[j] - ys[i], dx = (long) xs[j] - xs[i];
+            if (narrow) {
+                add(Slopes.quotient(dy, dx), 0, j, i);
+            }
+            else {
+                if (dx < 0 || (dx == 0 && dy < 0)) {
+                    dy = -dy;
+                    dx = -dx;
+                }
+                long g = Slopes.gcd(Math.abs(dy), dx);
+                add(dy / g, dx / g, j, i);
+            }
+        }
+
+        // Keep the buckets that make segments starting at the pivot,
+        // as the last point of each, reusing the front of used[].
+        int found = 0;
+        for (int u = 0; u < usedCount; u++) {
+            int s = used[u];
+            if (count[s] >= 3 && first[s] > i) used[found++] = last[s];
+        }
+
+        // In slope order, as FastCollinearPoints finds them; a pivot
+        // starts few segments, so insertion sort is enough.
+        for (int a = 1; a < found; a++) {
+            for (int b = a; b > 0 && slopeCompare(xs, ys, i, used[b], used[b-1]) < 0; b--) {
+                int t = used[b];
+                used[b] = used[b-1];
+                used[b-1] = t;
+            }
+        }
+        for (int a = 0; a < found; a++) {
+            int j = used[a];
+            segments.add(new LineSegment(new Point(xs[i], ys[i]), new Point(xs[j], ys[j])));
+        }
+    }
+
+    /*
+     * Compares the slopes from point i to points j and k exactly.
+     */
+    private static int slopeCompare(int[] xs, int[] ys, int i, int j, int k) {
+        long dy1 = (long) ys[j] - ys[i], dx1 = (long) xs[j] - xs[i];
+        long dy2 = (long) ys[k] - ys[i], dx2 = (long) xs[k] - xs[i];
+        if (dx1 < 0 || (dx1 == 0 && dy1 < 0)) {
+            dy1 = -dy1;
+            dx1 = -dx1;
+        }
+        if (dx2 < 0 || (dx2 == 0 && dy2 < 0)) {
+            dy2 = -dy2;
+            dx2 = -dx2;
+        }
+        return Slopes.compare(dy1, dx1, dy2, dx2);
+    }
+
+   /***************************************************************************
+    *  Class API
+    ***************************************************************************/
+
+    /*
+     * The number of line segments
+     */
+    public int numberOfSegments() {
+        return segments.size();
+    }
+
+    /*
+     * Return the line segments.
+     */
+    public LineSegment[] segments() {
+        return segments.toArray(new LineSegment[numberOfSegments()]);
+    }
+
+   /***************************************************************************
+    *  Unit Test
+    ***************************************************************************/
+
+    public static void main(String[] args) {
+
+        // read the n points from a file
+        In in = new In(args[0]);
+        int n = in.readInt();
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i++) {
+            int x = in.readInt();
+            int y = in.readInt();
+            points[i] = new Point(x, y);
+        }
+
+        // check against FastCollinearPoints
+        HashCollinearPoints collinear = new HashCollinearPoints(points);
+        LineSegment[] expected = new FastCollinearPoints(points).segments();
+        for (LineSegment segment : collinear.segments()) {
+            StdOut.println(segment);
+        }
+        StdOut.println(Arrays.toString(collinear.segments()).equals(Arrays.toString(expected))
+                       ? "Same as FastCollinearPoints" : "DIFFERENT from FastCollinearPoints");
+    }
+}
@@ -29,6 +29,20 @@ public class Point implements Comparable<Point> {
         this.y = y;
     }
 
+    /**
+     * Returns the <em>x</em>-coordinate, for the collinear engines.
+     */
+    int x() {
+        return x;
+    }
+
+    /**
+     * Returns the <em>y</em>-coordinate, for the collinear engines.
+     */
+    int y() {
+        return y;
+    }
+
     /**
      * Draws this point to standard draw.
      */
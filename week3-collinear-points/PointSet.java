@@ -0,0 +1,157 @@
+/******************************************************************************
+ *  Compilation:  javac PointSet.java
+ *  Execution:    java PointSet input.txt
+ *  Dependencies: Point.java In.java
+ *
+ *  An immutable set of points in the plane, stored as two int arrays
+ *  of coordinates instead of one Point object per point.
+ *
+ *  The collinear engines take a PointSet directly and sort and compute
+ *  slopes over the coordinate arrays; Point objects are only made for
+ *  the endpoints of the segments they report. of() and toPoints()
+ *  convert from and to Point[].
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import java.util.Arrays;
+
+public final class PointSet {
+    final int[] xs;     // x-coordinates
+    final int[] ys;     // y-coordinates
+
+    /**
+     * Initializes a set of points from their coordinates, which are copied.
+     *
+     * @param  xs the <em>x</em>-coordinates of the points
+     * @param  ys the <em>y</em>-coordinates of the points
+     * @throws IllegalArgumentException if an array is null, or the
+     *         lengths differ
+     */
+    public PointSet(int[] xs, int[] ys) {
+        if (xs == null || ys == null) throw new IllegalArgumentException("Null array");
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException("Lengths differ: " + xs.length + ", " + ys.length);
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+    }
+
+    // n points at (0, 0), for the factories to fill in place
+    private PointSet(int n) {
+        xs = new int[n];
+        ys = new int[n];
+    }
+
+    /**
+     * Returns the set of the given points.
+     *
+     * @throws IllegalArgumentException if the array or any entry is null
+     */
+    public static PointSet of(Point[] points) {
+        if (points == null) throw new IllegalArgumentException("Null array");
+        PointSet set = new PointSet(points.length);
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] == null) throw new IllegalArgumentException("Null entry");
+            set.xs[i] = points[i].x();
+            set.ys[i] = points[i].y();
+        }
+        return set;
+    }
+
+    /**
+     * Reads a set of points in the format of the assignment's input
+     * files: the number n, then n pairs of coordinates.
+     */
+    public static PointSet read(In in) {
+        PointSet set = new PointSet(in.readInt());
+        for (int i = 0; i < set.xs.length; i++) {
+            set.xs[i] = in.readInt();
+            set.ys[i] = in.readInt();
+        }
+        return set;
+    }
+
+    /**
+     * Returns the number of points.
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * Returns the <em>x</em>-coordinate of the i-th point.
+     *
+     * @throws ArrayIndexOutOfBoundsException unless 0 <= i < size()
+     */
+    public int x(int i) {
+        return xs[i];
+    }
+
+    /**
+     * Returns the <em>y</em>-coordinate of the i-th point.
+     *
+     * @throws ArrayIndexOutOfBoundsException unless 0 <= i < size()
+     */
+    public int y(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Returns the i-th point as a Point.
+     *
+     * @throws ArrayIndexOutOfBoundsException unless 0 <= i < size()
+     */
+    public Point point(int i) {
+        return new Point(xs[i], ys[i]);
+    }
+
+    /**
+     * Returns the points as a new Point[].
+     */
+    public Point[] toPoints() {
+        Point[] points = new Point[xs.length];
+        for (int i = 0; i < points.length; i++) points[i] = point(i);
+        return points;
+    }
+
+    /*
+     * Returns the points in the order of Point.compareTo(), by y and
+     * then x. Each point is packed into one long whose signed order is
+     * that order, so the sort runs on a primitive array.
+     *
+     * @throws IllegalArgumentException if two points are equal
+     */
+    PointSet sorted() {
+        int n = xs.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            // y in the high half; x offset by 2^31, so its unsigned order is its order
+            keys[i] = (long) ys[i] << 32 | ((xs[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys);
+        PointSet sorted = new PointSet(n);
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && keys[i] == keys[i - 1])
+                throw new IllegalArgumentException("Duplicated entries");
+            sorted.ys[i] = (int) (keys[i] >> 32);
+            sorted.xs[i] = (int) keys[i] ^ Integer.MIN_VALUE;
+        }
+        return sorted;
+    }
+
+    /**
+     * Unit test. Reads a file of points and checks that sorted()
+     * agrees with sorting the Point[].
+     */
+    public static void main(String[] args) {
+        PointSet set = read(new In(args[0]));
+        Point[] points = set.toPoints();
+        Arrays.sort(points);
+        PointSet sorted = set.sorted();
+        for (int i = 0; i < points.length; i++) {
+            if (points[i].compareTo(sorted.point(i)) != 0)
+                throw new AssertionError("Point " + i + ": " + points[i] + " " + sorted.point(i));
+        }
+        System.out.println(set.size() + " points, sorted the same way as Point[]");
+    }
+}
@@ -0,0 +1,200 @@
+/******************************************************************************
+ *  Compilation:  javac Slopes.java
+ *  Execution:    java Slopes
+ *  Dependencies: none
+ *
+ *  Exact slopes between points with integer coordinates, for the
+ *  collinear engines.
+ *
+ *  Equality and order of slopes are decided by compare(), on exact
+ *  128-bit cross products, with no division. For sorting, key() packs
+ *  a coarse slope, the float quotient dy / dx, above the index of a
+ *  point into one long. Rounding is monotone, so sorting the keys as
+ *  plain longs orders points by slope, and points with equal slopes
+ *  get equal coarse slopes; only distinct slopes closer than the float
+ *  precision share one, and runs of equal coarse slopes are split
+ *  exactly with compare().
+ *
+ *  For hashing, a slope needs one canonical value: quotient(), the
+ *  double dy / dx, when the coordinates span less than 2^16, and
+ *  otherwise the direction reduced by gcd().
+ *
+ ******************************************************************************/
+
+final class Slopes {
+    // largest coordinate span for which quotient() is exact
+    static final int MAX_SPAN = (1 << 16) - 1;
+
+    private static final long INDEX_MASK = 0xFFFFFFFFL;
+
+    private Slopes() { }
+
+    /*
+     * Returns the key of the point with the given index, at offset
+     * (dy, dx) from a pivot, not both 0: the coarse slope in the high
+     * 32 bits, as an int whose order is the order of the floats, and
+     * the index in the low 32 bits.
+     */
+    static long key(long dy, long dx, int index) {
+        // dy and dx are exact doubles, so both roundings are monotone;
+        // adding 0.0f turns -0.0 into 0.0
+        float slope = dx == 0 ? Float.POSITIVE_INFINITY : (float) ((double) dy / dx) + 0.0f;
+        int bits = Float.floatToRawIntBits(slope);
+        if (bits < 0) bits ^= 0x7FFFFFFF;  // negative floats order the other way
+        return (long) bits << 32 | index;
+    }
+
+    /*
+     * Returns the coarse slope of a key.
+     */
+    static int coarse(long key) {
+        return (int) (key >> 32);
+    }
+
+    /*
+     * Returns the point index of a key.
+     */
+    static int index(long key) {
+        return (int) (key & INDEX_MASK);
+    }
+
+    /*
+     * Checks whether the coordinates of the n points span at most
+     * MAX_SPAN in both axes, so that quotient() is exact.
+     */
+    static boolean narrow(int[] xs, int[] ys, int n) {
+        if (n == 0) return true;
+        int minX = xs[0], maxX = xs[0], minY = ys[0], maxY = ys[0];
+        for (int i = 1; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return (long) maxX - minX <= MAX_SPAN && (long) maxY - minY <= MAX_SPAN;
+    }
+
+    /*
+     * Returns the bits of the double dy / dx, with |dy|, |dx| <= MAX_SPAN,
+     * not both 0. Two distinct such slopes differ by at least 1/(dx1 dx2),
+     * relatively by at least 2^-48, far more than the rounding of a
+     * double, so equal bits mean exactly equal slopes.
+     */
+    static long quotient(long dy, long dx) {
+        double slope = dx == 0 ? Double.POSITIVE_INFINITY : (double) dy / dx + 0.0;  // no -0.0
+        return Double.doubleToRawLongBits(slope);
+    }
+
+    /*
+     * Returns the greatest common divisor of two non-negative longs,
+     * not both 0 (binary gcd, no division).
+     */
+    static long gcd(long a, long b) {
+        if (a == 0) return b;
+        if (b == 0) return a;
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>= Long.numberOfTrailingZeros(a);
+        do {
+            b >>= Long.numberOfTrailingZeros(b);
+            if (a > b) {
+                long t = a;
+                a = b;
+                b = t;
+            }
+            b -= a;
+        } while (b != 0);
+        return a << shift;
+    }
+
+    /*
+     * Fills dy[j] and dx[j] with the offset of point j from the pivot,
+     * for the n indices order[0..n), turned to the orientation of
+     * compare().
+     */
+    static void offsets(int[] xs, int[] ys, int pivot, int[] order, int n,
+                        long[] dy, long[] dx) {
+        for (int k = 0; k < n; k++) {
+            int j = order[k];
+            long y = (long) ys[j] - ys[pivot], x = (long) xs[j] - xs[pivot];
+            if (x < 0 || (x == 0 && y < 0)) {
+                y = -y;
+                x = -x;
+            }
+            dy[j] = y;
+            dx[j] = x;
+        }
+    }
+
+    /*
+     * Compares the slopes dy1/dx1 and dy2/dx2 exactly, where each
+     * direction has dx > 0, or dx == 0 and dy > 0 (vertical, the
+     * largest slope). Differences of ints need 33 bits, so the cross
+     * products are compared on all 128 bits.
+     */
+    static int compare(long dy1, long dx1, long dy2, long dx2) {
+        long a = dy1 * dx2, b = dy2 * dx1;
+        long aHigh = Math.multiplyHigh(dy1, dx2), bHigh = Math.multiplyHigh(dy2, dx1);
+        if (aHigh != bHigh) return aHigh < bHigh ? -1 : +1;
+        return Long.compareUnsigned(a, b);
+    }
+
+    /*
+     * Checks exactly whether dy1/dx1 and dy2/dx2 are the same slope,
+     * in any orientation, by comparing the 128-bit cross products.
+     */
+    static boolean sameSlope(long dy1, long dx1, long dy2, long dx2) {
+        return dy1 * dx2 == dy2 * dx1
+            && Math.multiplyHigh(dy1, dx2) == Math.multiplyHigh(dy2, dx1);
+    }
+
+    /*
+     * Sorts order[0..n) stably by the slopes of the points, given by
+     * their offsets dy[] and dx[] from a pivot in the orientation of
+     * compare(). Merge sort with the buffer aux of at least n ints;
+     * linear when the slopes are all equal, the common case.
+     */
+    static void sortBySlope(int[] order, int n, long[] dy, long[] dx, int[] aux) {
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width, hi = Math.min(lo + 2 * width, n);
+                int i = order[mid - 1], j = order[mid];
+                if (compare(dy[i], dx[i], dy[j], dx[j]) <= 0) continue;  // in order already
+                System.arraycopy(order, lo, aux, lo, hi - lo);
+                int p = lo, q = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (p == mid) order[k] = aux[q++];
+                    else if (q == hi) order[k] = aux[p++];
+                    else {
+                        int a = aux[p], b = aux[q];
+                        if (compare(dy[b], dx[b], dy[a], dx[a]) < 0) order[k] = aux[q++];
+                        else order[k] = aux[p++];
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Unit test. Checks on random offsets that keys never order
+     * slopes against compare(), and that equal slopes get equal
+     * coarse slopes.
+     */
+    public static void main(String[] args) {
+        java.util.Random random = new java.util.Random(42);
+        for (int t = 0; t < 1000000; t++) {
+            int range = t % 2 == 0 ? 41 : Integer.MAX_VALUE;
+            long dy1 = random.nextInt(range) - range / 2, dx1 = random.nextInt(range) - range / 2;
+            long dy2 = random.nextInt(range) - range / 2, dx2 = random.nextInt(range) - range / 2;
+            if ((dy1 == 0 && dx1 == 0) || (dy2 == 0 && dx2 == 0)) continue;
+            int byKey = Integer.compare(coarse(key(dy1, dx1, 0)), coarse(key(dy2, dx2, 0)));
+            if (dx1 < 0 || (dx1 == 0 && dy1 < 0)) { dy1 = -dy1; dx1 = -dx1; }
+            if (dx2 < 0 || (dx2 == 0 && dy2 < 0)) { dy2 = -dy2; dx2 = -dx2; }
+            int exact = compare(dy1, dx1, dy2, dx2);
+            if (byKey * exact < 0 || (exact == 0 && byKey != 0))
+                throw new AssertionError(dy1 + "/" + dx1 + " vs " + dy2 + "/" + dx2);
+        }
+        if (compare(Integer.MAX_VALUE - (long) Integer.MIN_VALUE, 1, 1L << 32, 1) >= 0)
+            throw new AssertionError("compare");
+        System.out.println("OK");
+    }
+}